@@ -0,0 +1,68 @@
+package org.gradle.docs.guides
+
+import static org.gradle.testkit.runner.TaskOutcome.SUCCESS
+
+class ContentTestGuidesDocumentationFunctionalTest extends AbstractGuideFunctionalSpec {
+    def "runs gradle commands with the installed Gradle and with the Gradle versions of the matrix"() {
+        makeSingleProject()
+        // The quiet command only runs as a new process, the other one runs through the Tooling API for the versions other than the default one
+        file("src/docs/guides/demo/contents/index.adoc") << '''
+= Demo
+
+[.testable-sample]
+====
+[listing.terminal.sample-command]
+----
+$ gradle -q help --task help
+Detailed task information for help
+
+Path
+     :help
+
+Type
+     Help (org.gradle.configuration.Help)
+
+Options
+     --task     The task to show help for.
+
+Description
+     Displays a help message.
+
+Group
+     help
+$ gradle help --task help
+
+> Task :help
+Detailed task information for help
+
+Path
+     :help
+
+Type
+     Help (org.gradle.configuration.Help)
+
+Options
+     --task     The task to show help for.
+
+Description
+     Displays a help message.
+
+Group
+     help
+
+BUILD SUCCESSFUL in 0s
+1 actionable task: 1 executed
+----
+====
+'''
+
+        when:
+        build('asciidoctorContentDocsTest', '-PcontentTest.gradleVersions=6.0.1,6.1.1')
+
+        then:
+        result.task(':asciidoctorContentDocsTest').outcome == SUCCESS
+        def summary = file('build/reports/content-test/summary.txt').text
+        summary =~ /6\.0\.1\s+PASSED\s+1\s+0/
+        summary =~ /6\.1\.1\s+PASSED\s+1\s+0/
+    }
+}
@@ -0,0 +1,100 @@
+package org.gradle.docs.guides
+
+import org.gradle.docs.internal.links.LinkUris
+
+import static org.gradle.testkit.runner.TaskOutcome.SUCCESS
+
+class LinkCheckFixtureGuidesDocumentationFunctionalTest extends AbstractGuideFunctionalSpec {
+    def setup() {
+        makeSingleProject()
+        file("src/docs/guides/demo/contents/index.adoc") << """
+= Demo
+
+See link:https://example.com/docs/page.html[the documentation].
+"""
+    }
+
+    def "replays the recorded result of every link of a guide"() {
+        def links = linksOfGuide()
+
+        when:
+        writeFixture(links.collectEntries { [it, "PASSED\t200\t\t"] })
+        build('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+
+        then:
+        result.task(':checkDemoGuideLinks').outcome == SUCCESS
+        links.contains('https://example.com/docs/page.html')
+
+        when:
+        writeFixture(links.collectEntries { [it, it == 'https://example.com/docs/page.html' ? "FAILED\t404\t\tNot Found" : "PASSED\t200\t\t"] })
+        buildAndFail('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+
+        then:
+        brokenLinks == ['https://example.com/docs/page.html']
+    }
+
+    def "fails the links that weren't recorded when replaying"() {
+        def links = linksOfGuide()
+        writeFixture(links.findAll { it != 'https://example.com/docs/page.html' }.collectEntries { [it, "PASSED\t200\t\t"] })
+
+        when:
+        buildAndFail('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+
+        then:
+        brokenLinks == ['https://example.com/docs/page.html']
+        result.output.contains('No recorded result in')
+    }
+
+    def "refuses to replay without a fixture"() {
+        when:
+        buildAndFail('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+
+        then:
+        result.output.contains('Cannot replay link checks, no fixture found at')
+    }
+
+    def "records the links of hosts that couldn't be verified and replays them as unverified"() {
+        def links = linksOfGuide()
+        def hosts = links.collect { URI.create(it).host }.unique()
+        fixtureFile.delete()
+
+        when:
+        build('checkDemoGuideLinks', '-PlinkCheck.mode=record', "-PlinkCheck.unverifiedHosts=${hosts.join(',')}")
+
+        then:
+        def lines = fixtureFile.readLines()
+        lines[0] == '# link-check-fixture v2'
+        lines.drop(1).collect { it.split('\t')[0] }.toSet() == links.collect { LinkUris.normalize(URI.create(it)).toString() }.toSet()
+        lines.drop(1).every { it.split('\t')[1] == 'UNVERIFIED' }
+
+        when:
+        build('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+
+        then:
+        result.task(':checkDemoGuideLinks').outcome == SUCCESS
+        result.output.contains("Some links couldn't be verified because their host is unavailable: ")
+    }
+
+    // Replaying an empty fixture fails every link of the rendered guide, which lists them without any network access
+    private List<String> linksOfGuide() {
+        writeFixture([:])
+        buildAndFail('checkDemoGuideLinks', '-PlinkCheck.mode=replay')
+        return brokenLinks
+    }
+
+    private List<String> getBrokenLinks() {
+        def lines = result.output.readLines()
+        def start = lines.findIndexOf { it.contains('The following links are broken:') }
+        assert start >= 0
+        return lines.drop(start + 1).takeWhile { it ==~ /\s*https?:\/\/\S+\s*/ }.collect { it.trim() }.unique()
+    }
+
+    private File getFixtureFile() {
+        return file('gradle/link-check-fixture.txt')
+    }
+
+    private void writeFixture(Map<String, String> recordings) {
+        fixtureFile.parentFile.mkdirs()
+        fixtureFile.text = (['# link-check-fixture v2'] + recordings.collect { link, recording -> "${LinkUris.normalize(URI.create(link))}\t${recording}" }).join('\n') + '\n'
+    }
+}
@@ -0,0 +1,111 @@
+package org.gradle.docs.internal.exemplar
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class ByteRingTest extends Specification {
+    def "rounds the capacity up to a power of two"() {
+        expect:
+        new ByteRing(capacity).capacity == expected
+
+        where:
+        capacity | expected
+        1        | 1
+        5        | 8
+        16       | 16
+        1000     | 1024
+    }
+
+    def "wraps around while a writer streams more bytes than the ring holds"() {
+        def ring = new ByteRing(16)
+        def bytes = new byte[10_000]
+        new Random(42).nextBytes(bytes)
+        def writer = Thread.start {
+            def outStream = ring.outputStream
+            int offset = 0
+            // Odd sized writes so they keep straddling the end of the buffer
+            while (offset < bytes.length) {
+                int length = Math.min(7, bytes.length - offset)
+                outStream.write(bytes, offset, length)
+                offset += length
+            }
+            outStream.close()
+        }
+
+        when:
+        def received = new ByteArrayOutputStream()
+        def chunk = new byte[5]
+        int count
+        while ((count = ring.inputStream.read(chunk, 0, chunk.length)) >= 0) {
+            received.write(chunk, 0, count)
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(10))
+
+        then:
+        !writer.alive
+        received.toByteArray() == bytes
+    }
+
+    def "never interleaves the bytes of concurrent writes"() {
+        def ring = new ByteRing(8)
+        def writers = ['a', 'b', 'c'].collect { letter ->
+            Thread.start {
+                100.times { ring.outputStream.write((letter * 20).bytes) }
+            }
+        }
+        def closer = Thread.start {
+            writers*.join()
+            ring.outputStream.close()
+        }
+
+        when:
+        def text = new String(ring.inputStream.bytes)
+        closer.join(TimeUnit.SECONDS.toMillis(10))
+
+        then:
+        text.length() == 3 * 100 * 20
+        text.toList().collate(20).every { it.unique().size() == 1 }
+    }
+
+    def "reads the remaining bytes and then the end of the stream once the writer is closed"() {
+        def ring = new ByteRing(8)
+        def chunk = new byte[8]
+
+        when:
+        ring.outputStream.write("abc".bytes)
+        ring.outputStream.close()
+
+        then:
+        ring.poll(chunk, 0, 2) == 2
+        ring.poll(chunk, 2, 6) == 1
+        new String(chunk, 0, 3) == "abc"
+        ring.poll(chunk, 0, 8) == -1
+        ring.inputStream.read() == -1
+
+        when:
+        ring.outputStream.write("d".bytes)
+
+        then:
+        thrown(IOException)
+    }
+
+    def "polls without blocking while the writer is open"() {
+        def ring = new ByteRing(8)
+
+        expect:
+        ring.poll(new byte[8], 0, 8) == 0
+    }
+
+    def "discards the bytes written once the reader is closed"() {
+        def ring = new ByteRing(4)
+        ring.inputStream.close()
+
+        when:
+        // More than the ring holds, so this would block forever if the bytes weren't discarded
+        ring.outputStream.write(new byte[100])
+
+        then:
+        noExceptionThrown()
+    }
+}
@@ -0,0 +1,144 @@
+package org.gradle.docs.internal.exemplar
+
+import org.gradle.samples.model.Command
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class CommandExtractionCacheTest extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+    CommandExtractionCache cache
+    CountingExtractor extractor = new CountingExtractor()
+
+    def setup() {
+        cache = new CommandExtractionCache(temporaryFolder.newFolder("cache"))
+    }
+
+    def "parses an unchanged content file once"() {
+        def content = file("docs/index.adoc") << "= Demo\n"
+
+        when:
+        def first = extract(content)
+        def second = extract(content)
+
+        then:
+        extractor.parsed == 1
+        second*.executable == first*.executable
+        second*.args == first*.args
+        second*.expectedOutput == first*.expectedOutput
+        second*.executionSubdirectory == [null]
+    }
+
+    def "parses a content file again when it changes"() {
+        def content = file("docs/index.adoc") << "= Demo\n"
+
+        when:
+        extract(content)
+        content << "More content\n"
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    def "parses a content file again when a file it includes through an attribute entry changes"() {
+        def snippet = file("samples/demo/snippet.adoc") << "first\n"
+        def content = file("docs/index.adoc") << """= Demo
+:samples-dir: {docdir}/../samples
+:sample-name: demo
+
+include::{samples-dir}/{sample-name}/snippet.adoc[]
+"""
+
+        when:
+        extract(content)
+        extract(content)
+
+        then:
+        extractor.parsed == 1
+
+        when:
+        snippet.text = "second\n"
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    def "follows includes of included files relative to them"() {
+        def nested = file("docs/parts/nested.adoc") << "first\n"
+        file("docs/parts/part.adoc") << "include::nested.adoc[]\n"
+        def content = file("docs/index.adoc") << "= Demo\n\ninclude::parts/part.adoc[]\n"
+
+        when:
+        extract(content)
+        nested.text = "second\n"
+        extract(content)
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    def "always parses a content file including a file through an attribute it can't resolve"() {
+        file("samples/snippet.adoc") << "snippet\n"
+        def content = file("docs/index.adoc") << "= Demo\n\ninclude::{unknown-dir}/snippet.adoc[]\n"
+
+        when:
+        extract(content)
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    def "always parses a content file including a file that doesn't exist"() {
+        def content = file("docs/index.adoc") << "= Demo\n\ninclude::missing.adoc[]\n"
+
+        when:
+        extract(content)
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    def "always parses a content file including a file through an attribute that was unset"() {
+        file("samples/snippet.adoc") << "snippet\n"
+        def content = file("docs/index.adoc") << """= Demo
+:samples-dir: {docdir}/../samples
+:samples-dir!:
+
+include::{samples-dir}/snippet.adoc[]
+"""
+
+        when:
+        extract(content)
+        extract(content)
+
+        then:
+        extractor.parsed == 2
+    }
+
+    private List<Command> extract(File content) {
+        return CommandExtractionCache.extract(cache, extractor, content)
+    }
+
+    private File file(String path) {
+        def file = new File(temporaryFolder.root, path)
+        file.parentFile.mkdirs()
+        return file
+    }
+
+    // Counts the content files parsed instead of running Asciidoctor
+    private static class CountingExtractor extends AsciidoctorCommandExtractor {
+        int parsed
+
+        @Override
+        List<Command> extract(File contentFile) {
+            parsed++
+            return [new Command("gradle", null, ["build", "--scan"], [], "BUILD SUCCESSFUL", false, false, false)]
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.gradle.docs.internal.exemplar
+
+import org.gradle.samples.model.Command
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class CommandResultCacheTest extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+    CommandResultCache cache
+    File sandbox
+
+    def setup() {
+        cache = new CommandResultCache(temporaryFolder.newFolder("cache"))
+        sandbox = temporaryFolder.newFolder("sandbox")
+    }
+
+    def "replays the files and directories created, changed and deleted by a command"() {
+        file(sandbox, "settings.gradle") << "rootProject.name = 'demo'"
+        file(sandbox, "changed.txt") << "before"
+        file(sandbox, "deleted.txt") << "deleted"
+        file(sandbox, "deleted-dir/file.txt") << "deleted"
+        file(sandbox, "became-dir") << "file"
+        def other = copyOf(sandbox, "other")
+        def before = CommandResultCache.Snapshot.of(sandbox)
+
+        // What the command does
+        file(sandbox, "changed.txt").text = "after"
+        file(sandbox, "created/nested/file.txt") << "created"
+        new File(sandbox, "created-empty-dir").mkdirs()
+        new File(sandbox, "deleted.txt").delete()
+        new File(sandbox, "deleted-dir").deleteDir()
+        new File(sandbox, "became-dir").delete()
+        file(sandbox, "became-dir/file.txt") << "nested"
+        cache.store("1234", sandbox, before, "Hello from ${sandbox.absolutePath}/build")
+
+        when:
+        def output = cache.replay("1234", other)
+
+        then:
+        output == "Hello from ${other.absolutePath}/build"
+        contentOf(other) == contentOf(sandbox)
+        new File(other, "created-empty-dir").isDirectory()
+        !new File(other, "deleted.txt").exists()
+        !new File(other, "deleted-dir").exists()
+        new File(other, "settings.gradle").text == "rootProject.name = 'demo'"
+    }
+
+    def "replays build output directories as a whole"() {
+        file(sandbox, "build.gradle") << "plugins { id('java') }"
+        file(sandbox, "src/main/java/build/Source.java") << "package build;"
+        file(sandbox, ".gradle/6.0.1/fileHashes/fileHashes.lock") << "stale"
+        file(sandbox, "sub/build/stale.txt") << "stale"
+        def other = copyOf(sandbox, "other")
+        def before = CommandResultCache.Snapshot.of(sandbox)
+
+        file(sandbox, ".gradle/6.0.1/fileHashes/fileHashes.lock").text = "lock"
+        file(sandbox, "build/classes/java/main/build/Source.class") << "class"
+        new File(sandbox, "sub/build").deleteDir()
+        file(sandbox, "src/main/java/build/Source.java").text = "package build; class Source {}"
+        cache.store("1234", sandbox, before, "")
+
+        when:
+        cache.replay("1234", other)
+
+        then:
+        contentOf(other) == contentOf(sandbox)
+        !new File(other, "sub/build").exists()
+    }
+
+    def "leaves the sandbox alone for a command that isn't cached"() {
+        file(sandbox, "file.txt") << "content"
+
+        expect:
+        cache.replay("5678", sandbox) == null
+        contentOf(sandbox) == ["file.txt": "content"]
+    }
+
+    def "keys commands by the state of the sandbox before them"() {
+        def sample = temporaryFolder.newFolder("sample")
+        file(sample, "build.gradle") << "plugins { id('java') }"
+        def seedKey = CommandResultCache.seedKey(sample)
+        def command = new Command("gradle", null, ["build"], [], "", false, false, false)
+
+        expect:
+        CommandResultCache.seedKey(sample) == seedKey
+        CommandResultCache.seedKey(null) != seedKey
+        CommandResultCache.commandKey(seedKey, "", command, "6.0.1") == CommandResultCache.commandKey(seedKey, "", command, "6.0.1")
+        CommandResultCache.commandKey(seedKey, "", command, "6.0.1") != CommandResultCache.commandKey(seedKey, "", command, "6.1.1")
+        CommandResultCache.commandKey(seedKey, "", command, "6.0.1") != CommandResultCache.commandKey(seedKey, "sub", command, "6.0.1")
+
+        when:
+        file(sample, "build.gradle").text = "plugins { id('groovy') }"
+
+        then:
+        CommandResultCache.seedKey(sample) != seedKey
+    }
+
+    private static File file(File root, String path) {
+        def file = new File(root, path)
+        file.parentFile.mkdirs()
+        return file
+    }
+
+    private File copyOf(File directory, String name) {
+        def copy = temporaryFolder.newFolder(name)
+        directory.eachFileRecurse { source ->
+            def target = new File(copy, directory.toPath().relativize(source.toPath()).toString())
+            if (source.directory) {
+                target.mkdirs()
+            } else {
+                target.parentFile.mkdirs()
+                target.bytes = source.bytes
+            }
+        }
+        return copy
+    }
+
+    // The content of every file and every empty directory, by path
+    private static Map<String, String> contentOf(File directory) {
+        def content = new TreeMap<String, String>()
+        directory.eachFileRecurse { file ->
+            def path = directory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/' as char)
+            if (file.directory) {
+                if (file.list().length == 0) {
+                    content[path + "/"] = ""
+                }
+            } else {
+                content[path] = file.text
+            }
+        }
+        return content
+    }
+}
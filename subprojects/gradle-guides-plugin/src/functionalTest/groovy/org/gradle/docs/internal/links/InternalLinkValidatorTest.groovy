@@ -0,0 +1,96 @@
+package org.gradle.docs.internal.links
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class InternalLinkValidatorTest extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def "accepts links to existing pages, directories and anchors"() {
+        page("index.html", '''
+            <h1 id="top">Home</h1>
+            <a href="#top">Top</a>
+            <a href="guide/">Guide</a>
+            <a href="guide">Guide</a>
+            <a href="guide/other.html#section">Other section</a>
+            <a href="guide/other.html#legacy">Legacy anchor</a>
+            <a href="images/logo.png">Logo</a>
+        ''')
+        page("guide/index.html", '''
+            <a href="../index.html#top">Home</a>
+            <a href="other.html">Other</a>
+        ''')
+        page("guide/other.html", '''
+            <div id="section"></div>
+            <a name="legacy"></a>
+        ''')
+        file("images/logo.png")
+
+        when:
+        def validator = InternalLinkValidator.index(temporaryFolder.root)
+
+        then:
+        validator.pageCount == 3
+        validator.findBrokenLinks().empty
+    }
+
+    def "reports links to missing files and anchors"() {
+        page("index.html", '''
+            <a href="missing.html">Missing</a>
+            <a href="guide/">Guide without index</a>
+            <a href="#nowhere">Missing anchor</a>
+            <a href="guide/other.html#nowhere">Missing anchor on other page</a>
+        ''')
+        page("guide/other.html", '''
+            <a href="../missing/page.html">Missing</a>
+        ''')
+
+        when:
+        def brokenLinks = InternalLinkValidator.index(temporaryFolder.root).findBrokenLinks()
+
+        then:
+        brokenLinks == [
+            "guide/other.html: ../missing/page.html (no file at 'missing/page.html')",
+            "index.html: #nowhere (no anchor 'nowhere' in 'index.html')",
+            "index.html: guide/ (no file at 'guide/index.html')",
+            "index.html: guide/other.html#nowhere (no anchor 'nowhere' in 'guide/other.html')",
+            "index.html: missing.html (no file at 'missing.html')",
+        ]
+    }
+
+    def "reports malformed links"() {
+        page("index.html", '''
+            <a href="some page.html">Malformed</a>
+        ''')
+
+        expect:
+        InternalLinkValidator.index(temporaryFolder.root).findBrokenLinks() == ["index.html: some page.html (malformed link)"]
+    }
+
+    def "ignores absolute links, root relative links and links leaving the rendered documentation"() {
+        page("index.html", '''
+            <a href="https://gradle.org/missing.html">Absolute</a>
+            <a href="mailto:someone@example.com">Mail</a>
+            <a href="//gradle.org/missing.html">Protocol relative</a>
+            <a href="/missing.html">Root relative</a>
+            <a href="../userguide/missing.html">User manual</a>
+            <a href="">Empty</a>
+        ''')
+
+        expect:
+        InternalLinkValidator.index(temporaryFolder.root).findBrokenLinks().empty
+    }
+
+    private void page(String path, String body) {
+        file(path).text = "<html><body>${body}</body></html>"
+    }
+
+    private File file(String path) {
+        def file = new File(temporaryFolder.root, path)
+        file.parentFile.mkdirs()
+        file.createNewFile()
+        return file
+    }
+}
@@ -0,0 +1,122 @@
+package org.gradle.docs.internal.links
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LinkCheckCacheTest extends Specification {
+    private static final Duration SUCCESS_TIME_TO_LIVE = Duration.ofHours(24)
+    private static final Duration FAILURE_TIME_TO_LIVE = Duration.ofHours(1)
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+    File file
+
+    def setup() {
+        file = new File(temporaryFolder.root, "link-check/results.txt")
+    }
+
+    def "keeps passed and failed links for their own time to live"() {
+        def cache = load()
+        cache.put(uri("passed"), result("passed", LinkCheckResult.Outcome.PASSED, Duration.ofHours(2)))
+        cache.put(uri("failed"), result("failed", LinkCheckResult.Outcome.FAILED, Duration.ofMinutes(30)))
+        cache.put(uri("expired-passed"), result("expired-passed", LinkCheckResult.Outcome.PASSED, Duration.ofHours(25)))
+        cache.put(uri("expired-failed"), result("expired-failed", LinkCheckResult.Outcome.FAILED, Duration.ofHours(2)))
+
+        expect:
+        cache.get(uri("passed")).passed
+        cache.get(uri("failed")).outcome == LinkCheckResult.Outcome.FAILED
+        cache.get(uri("expired-passed")) == null
+        cache.get(uri("expired-failed")) == null
+
+        when:
+        cache.save()
+
+        then:
+        def lines = file.readLines()
+        lines[0] == "# link-check-cache v1"
+        lines.size() == 3
+        !file.text.contains("expired")
+    }
+
+    def "reloads the saved results"() {
+        def checkedAt = Instant.now().minus(Duration.ofMinutes(5))
+        def cache = load()
+        cache.put(uri("redirected"), new LinkCheckResult(uri("redirected"), LinkCheckResult.Outcome.PASSED, 301, URI.create("https://example.com/target"), null, checkedAt))
+        cache.put(uri("broken"), new LinkCheckResult(uri("broken"), LinkCheckResult.Outcome.FAILED, 404, null, "Not\tfound\nat all", checkedAt))
+        cache.save()
+
+        when:
+        def reloaded = load()
+
+        then:
+        with(reloaded.get(uri("redirected"))) {
+            passed
+            statusCode == 301
+            redirectTarget == URI.create("https://example.com/target")
+            it.checkedAt.toEpochMilli() == checkedAt.toEpochMilli()
+        }
+        with(reloaded.get(uri("broken"))) {
+            outcome == LinkCheckResult.Outcome.FAILED
+            statusCode == 404
+            failureMessage == "Not found at all"
+        }
+    }
+
+    def "merges the results of concurrent writers"() {
+        def writers = 8
+        def linksPerWriter = 50
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(writers)
+
+        when:
+        def futures = (0..<writers).collect { writer ->
+            executor.submit {
+                def cache = load()
+                (0..<linksPerWriter).each { cache.put(uri("${writer}/${it}"), result("${writer}/${it}", LinkCheckResult.Outcome.PASSED, Duration.ZERO)) }
+                start.await()
+                cache.save()
+            }
+        }
+        start.countDown()
+        futures*.get(30, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        def reloaded = load()
+        (0..<writers).every { writer -> (0..<linksPerWriter).every { reloaded.get(uri("${writer}/${it}")) != null } }
+        file.readLines().size() == writers * linksPerWriter + 1
+    }
+
+    def "keeps the most recent result of a link written by several caches"() {
+        def first = load()
+        def second = load()
+        first.put(uri("page"), result("page", LinkCheckResult.Outcome.FAILED, Duration.ofMinutes(1)))
+        second.put(uri("page"), result("page", LinkCheckResult.Outcome.PASSED, Duration.ofMinutes(10)))
+
+        when:
+        first.save()
+        second.save()
+
+        then:
+        load().get(uri("page")).outcome == LinkCheckResult.Outcome.FAILED
+    }
+
+    private LinkCheckCache load() {
+        return LinkCheckCache.load(file, SUCCESS_TIME_TO_LIVE, FAILURE_TIME_TO_LIVE)
+    }
+
+    private static URI uri(String path) {
+        return URI.create("https://example.com/${path}")
+    }
+
+    private static LinkCheckResult result(String path, LinkCheckResult.Outcome outcome, Duration age) {
+        return new LinkCheckResult(uri(path), outcome, outcome == LinkCheckResult.Outcome.PASSED ? 200 : 404, null, outcome == LinkCheckResult.Outcome.PASSED ? null : "Not found", Instant.now().minus(age))
+    }
+}
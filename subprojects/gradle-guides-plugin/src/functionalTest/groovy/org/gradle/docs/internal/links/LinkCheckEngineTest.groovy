@@ -0,0 +1,182 @@
+package org.gradle.docs.internal.links
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class LinkCheckEngineTest extends Specification {
+    def unavailableHosts = UnavailableHosts.inMemory()
+    def probedLinks = Collections.synchronizedList([])
+    def inFlight = new AtomicInteger()
+    def maxInFlight = new AtomicInteger()
+    def inFlightByHost = new ConcurrentHashMap<String, AtomicInteger>()
+    def maxInFlightByHost = new ConcurrentHashMap<String, Integer>()
+    LinkCheckEngine engine
+
+    def cleanup() {
+        engine?.close()
+    }
+
+    def "limits the requests in flight per host while hosts are probed in parallel"() {
+        engine = newEngine(probe(50) { LinkCheckResult.passed(it, 200, (URI) null) }, 8, 2)
+
+        when:
+        def results = check((1..6).collect { "https://a.example/${it}" } + (1..6).collect { "https://b.example/${it}" })
+
+        then:
+        results.every { it.passed }
+        maxInFlightByHost['a.example'] == 2
+        maxInFlightByHost['b.example'] == 2
+        maxInFlight.get() == 4
+    }
+
+    def "probes a refused link again after a backoff"() {
+        def attempts = new AtomicInteger()
+        engine = newEngine(probe { attempts.incrementAndGet() < 3 ? LinkCheckResult.refused(it, 429, "Too many requests", null) : LinkCheckResult.passed(it, 200, (URI) null) }, 4, 4)
+
+        when:
+        def start = System.nanoTime()
+        def result = check(["https://a.example/page"])[0]
+        def elapsed = Duration.ofNanos(System.nanoTime() - start)
+
+        then:
+        result.passed
+        result.retries == 2
+        attempts.get() == 3
+        // Half of the 10ms and 20ms backoffs at least
+        elapsed >= Duration.ofMillis(15)
+    }
+
+    def "fails a link still refused once its retries are used up"() {
+        engine = newEngine(probe { LinkCheckResult.refused(it, 503, "Service unavailable", null) }, 4, 4, policy(1, 5))
+
+        when:
+        def result = check(["https://a.example/page"])[0]
+
+        then:
+        result.outcome == LinkCheckResult.Outcome.FAILED
+        result.failureMessage == "Service unavailable"
+        probedLinks.size() == 2
+        !unavailableHosts.isUnavailable("a.example")
+    }
+
+    def "opens the circuit of a host refusing distinct links in a row"() {
+        engine = newEngine(probe { LinkCheckResult.refused(it, 429, "Too many requests", null) }, 4, 4, policy(0, 2))
+
+        when:
+        def first = check(["https://a.example/1"])[0]
+        def second = check(["https://a.example/2"])[0]
+        def third = check(["https://a.example/3"])[0]
+        def otherHost = check(["https://b.example/1"])[0]
+
+        then:
+        first.outcome == LinkCheckResult.Outcome.FAILED
+        second.outcome == LinkCheckResult.Outcome.FAILED
+        third.outcome == LinkCheckResult.Outcome.UNVERIFIED
+        third.failureMessage.contains("a.example is unavailable, it refused 2 link(s) in a row")
+        probedLinks == ["https://a.example/1", "https://a.example/2", "https://b.example/1"]
+        unavailableHosts.isUnavailable("a.example")
+        otherHost.outcome == LinkCheckResult.Outcome.FAILED
+    }
+
+    def "opens the circuit of a host asking to wait longer than the longest backoff"() {
+        engine = newEngine(probe { LinkCheckResult.refused(it, 429, "Too many requests", Duration.ofMinutes(5)) }, 4, 4)
+
+        when:
+        def results = check(["https://a.example/1", "https://a.example/2"])
+
+        then:
+        results*.outcome.count(LinkCheckResult.Outcome.FAILED) >= 1
+        results.every { it.outcome != LinkCheckResult.Outcome.PASSED }
+        unavailableHosts.isUnavailable("a.example")
+    }
+
+    def "probes a single link of a host unavailable in a previous build and closes the circuit when it answers"() {
+        unavailableHosts.markUnavailable("a.example")
+        engine = newEngine(probe(20) { LinkCheckResult.passed(it, 200, (URI) null) }, 4, 4)
+
+        when:
+        def results = check((1..4).collect { "https://a.example/${it}" })
+
+        then:
+        results.every { it.passed }
+        !unavailableHosts.isUnavailable("a.example")
+    }
+
+    def "opens the circuit of a host unavailable in a previous build as soon as it refuses"() {
+        unavailableHosts.markUnavailable("a.example")
+        engine = newEngine(probe(20) { LinkCheckResult.refused(it, 503, "Service unavailable", null) }, 4, 4)
+
+        when:
+        def results = check((1..4).collect { "https://a.example/${it}" })
+
+        then:
+        probedLinks.size() == 1
+        maxInFlightByHost['a.example'] == 1
+        results*.outcome.count(LinkCheckResult.Outcome.FAILED) == 1
+        results*.outcome.count(LinkCheckResult.Outcome.UNVERIFIED) == 3
+        unavailableHosts.isUnavailable("a.example")
+    }
+
+    def "never probes the links of hosts configured as unverified"() {
+        unavailableHosts.withUnverifiedHosts(["A.example"])
+        engine = newEngine(probe { LinkCheckResult.passed(it, 200, (URI) null) }, 4, 4)
+
+        when:
+        def result = check(["https://a.example/page"])[0]
+
+        then:
+        result.outcome == LinkCheckResult.Outcome.UNVERIFIED
+        result.failureMessage == "a.example is configured as unverified, its links are not checked"
+        probedLinks.empty
+    }
+
+    def "prefetched refusals leave the circuit of the host closed"() {
+        engine = newEngine(probe { LinkCheckResult.refused(it, 429, "Too many requests", null) }, 4, 4, policy(0, 1))
+
+        when:
+        def prefetched = engine.prefetch(URI.create("https://a.example/1")).get(10, TimeUnit.SECONDS)
+
+        then:
+        prefetched.refused
+        prefetched.retries == 0
+        !unavailableHosts.isUnavailable("a.example")
+    }
+
+    private LinkCheckEngine newEngine(LinkProbe probe, int maxConcurrentRequests, int maxConcurrentRequestsPerHost, HostHealthPolicy policy = policy(2, 3)) {
+        return new LinkCheckEngine(probe, maxConcurrentRequests, maxConcurrentRequestsPerHost, policy, unavailableHosts)
+    }
+
+    private static HostHealthPolicy policy(int maxRetries, int circuitBreakerThreshold) {
+        return new HostHealthPolicy(maxRetries, circuitBreakerThreshold, Duration.ofMillis(10), Duration.ofSeconds(1))
+    }
+
+    private List<LinkCheckResult> check(List<String> links) {
+        def futures = links.collect { engine.check(URI.create(it)) }
+        return futures.collect { it.get(10, TimeUnit.SECONDS) }
+    }
+
+    // Records the links probed and how many were in flight at once, overall and per host
+    private LinkProbe probe(long latencyMillis = 0, Closure<LinkCheckResult> answer) {
+        return { URI uri ->
+            probedLinks << uri.toString()
+            def hostInFlight = inFlightByHost.computeIfAbsent(uri.host) { new AtomicInteger() }
+            int current = inFlight.incrementAndGet()
+            int currentForHost = hostInFlight.incrementAndGet()
+            maxInFlight.accumulateAndGet(current) { a, b -> Math.max(a, b) }
+            maxInFlightByHost.merge(uri.host, currentForHost) { a, b -> Math.max(a, b) }
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis)
+                }
+                return answer.call(uri)
+            } finally {
+                hostInFlight.decrementAndGet()
+                inFlight.decrementAndGet()
+            }
+        } as LinkProbe
+    }
+}
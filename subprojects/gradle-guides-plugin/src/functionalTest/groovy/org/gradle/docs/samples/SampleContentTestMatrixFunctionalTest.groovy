@@ -0,0 +1,63 @@
+package org.gradle.docs.samples
+
+class SampleContentTestMatrixFunctionalTest extends AbstractSampleFunctionalSpec {
+    def setup() {
+        buildFile << """
+            plugins {
+                id 'org.gradle.documentation'
+            }
+        """
+        buildFile << createSample('alpha')
+        buildFile << createSample('beta', Dsl.GROOVY)
+        buildFile << '''
+            tasks.register('printContentTestCases') {
+                doLast {
+                    tasks.asciidoctorContentDocsTest.testCases.each { testCase ->
+                        def startingSample = projectDir.toPath().relativize(testCase.startingSample.get().asFile.toPath()).toString().replace(File.separatorChar, '/' as char)
+                        println "content test case: ${testCase.contentFile.get().asFile.name} -> ${startingSample}"
+                    }
+                }
+            }
+        '''
+        ['alpha', 'beta'].each { name ->
+            writeReadmeTo(file("src/docs/samples/${name}"))
+            writeGroovyDslSampleTo(file("src/docs/samples/${name}/groovy"))
+            writeKotlinDslSampleTo(file("src/docs/samples/${name}/kotlin"))
+        }
+    }
+
+    def "tests the content of each sample against its archive for each of its DSLs"() {
+        when:
+        build('printContentTestCases')
+
+        then:
+        contentTestCases == [
+            'sample_alpha.adoc -> build/working/samples/install/alpha/groovy',
+            'sample_alpha.adoc -> build/working/samples/install/alpha/kotlin',
+            'sample_beta.adoc -> build/working/samples/install/beta/groovy',
+        ]
+    }
+
+    def "only tests the content of samples against the archives of the tested DSLs"() {
+        when:
+        build('printContentTestCases', '-Psamples.contentTest.dsls=kotlin')
+
+        then:
+        contentTestCases == [
+            'sample_alpha.adoc -> build/working/samples/install/alpha/kotlin',
+        ]
+
+        when:
+        build('printContentTestCases', '-Psamples.contentTest.dsls=groovy')
+
+        then:
+        contentTestCases == [
+            'sample_alpha.adoc -> build/working/samples/install/alpha/groovy',
+            'sample_beta.adoc -> build/working/samples/install/beta/groovy',
+        ]
+    }
+
+    private List<String> getContentTestCases() {
+        return result.output.readLines().findAll { it.startsWith('content test case: ') }.collect { it - 'content test case: ' }.sort()
+    }
+}
@@ -49,5 +49,9 @@ public abstract class GuideContentBinary extends GuideBinary implements Viewable
         return "check" + capitalize(getName()) + "GuideLinks";
     }
 
+    public String getPrefetchLinksTaskName() {
+        return "prefetch" + capitalize(getName()) + "GuideLinks";
+    }
+
     public abstract RegularFileProperty getSourcePageFile();
 }
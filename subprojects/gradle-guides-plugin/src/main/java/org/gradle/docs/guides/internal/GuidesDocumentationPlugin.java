@@ -12,6 +12,7 @@ import org.gradle.api.attributes.Usage;
 import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.Sync;
@@ -21,6 +22,8 @@ import org.gradle.docs.guides.internal.tasks.GenerateGuidePageAsciidoc;
 import org.gradle.docs.internal.DocumentationBasePlugin;
 import org.gradle.docs.internal.DocumentationExtensionInternal;
 import org.gradle.docs.internal.exemplar.AsciidoctorContentTest;
+import org.gradle.docs.internal.links.LinkCheckService;
+import org.gradle.docs.internal.tasks.PrefetchLinks;
 import org.gradle.language.base.plugins.LifecycleBasePlugin;
 
 import java.io.File;
@@ -31,8 +34,11 @@ import static org.gradle.docs.internal.Asserts.assertNameDoesNotContainsDisallow
 import static org.gradle.docs.internal.DocumentationBasePlugin.DOCUMENTATION_GROUP_NAME;
 import static org.gradle.docs.internal.StringUtils.*;
 import static org.gradle.docs.internal.configure.AsciidoctorTasks.*;
+import static org.gradle.docs.internal.configure.ContentBinaries.contentTestGradleVersions;
+import static org.gradle.docs.internal.configure.ContentBinaries.createCheckInternalLinksTask;
 import static org.gradle.docs.internal.configure.ContentBinaries.createCheckTasksForContentBinary;
 import static org.gradle.docs.internal.configure.ContentBinaries.createTasksForContentBinary;
+import static org.gradle.docs.internal.configure.ContentBinaries.registerLinkCheckService;
 
 public class GuidesDocumentationPlugin implements Plugin<Project> {
     @Override
@@ -54,6 +60,7 @@ public class GuidesDocumentationPlugin implements Plugin<Project> {
 
         TaskProvider<Task> assemble = tasks.named(LifecycleBasePlugin.ASSEMBLE_TASK_NAME);
         TaskProvider<Task> check = tasks.register("checkGuides");
+        Provider<LinkCheckService> linkCheckService = registerLinkCheckService(project);
 
         // Configure the guides extension to configure published samples
         GuidesInternal extension = configureGuidesExtension(project, layout);
@@ -64,11 +71,12 @@ public class GuidesDocumentationPlugin implements Plugin<Project> {
         // Guide binaries
         // TODO: This could be lazy if we had a way to make the TaskContainer require evaluation
         extension.getBinaries().withType(GuideContentBinary.class).all(binary -> createTasksForContentBinary(tasks, binary));
-        extension.getBinaries().withType(GuideContentBinary.class).all(binary -> createCheckTasksForContentBinary(tasks, binary, check));
+        extension.getBinaries().withType(GuideContentBinary.class).all(binary -> createCheckTasksForContentBinary(tasks, layout, linkCheckService, binary, check));
         extension.getBinaries().withType(GuideContentBinary.class).all(binary -> createTasksForGuideContentBinary(tasks, layout, providers, binary));
 
         // Render all the documentation out to HTML
-        TaskProvider<? extends Task> renderTask = renderGuidesDocumentation(tasks, assemble, check, extension, asciidoctorConfiguration);
+        TaskProvider<? extends Task> renderTask = renderGuidesDocumentation(tasks, layout, assemble, check, extension, asciidoctorConfiguration);
+        extension.getBinaries().withType(GuideContentBinary.class).all(binary -> createPrefetchLinksTask(tasks, linkCheckService, binary, renderTask));
 
         // Publish the guides to consumers
         createPublishGuidesElements(project.getConfigurations(), objects, renderTask, extension);
@@ -94,6 +102,14 @@ public class GuidesDocumentationPlugin implements Plugin<Project> {
             task.setDescription("Check guides steps commands.");
             task.getClasspath().from(configuration);
             task.getGradleUserHomeDirectoryForTesting().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-gradle-user-home"));
+            task.getGradleVersions().convention(contentTestGradleVersions(project));
+            task.getCommandResultCacheDirectory().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-command-cache"));
+            task.getCommandExtractionCacheDirectory().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-extraction-cache"));
+            task.getBatchSize().convention(1);
+            task.getMaxParallelForks().convention(0);
+            task.getForkMaxHeapSize().convention("512m");
+            task.getDurationsFile().convention(project.getRootProject().getLayout().getBuildDirectory().file("working/guides/content-testing-durations.txt"));
+            task.getSummaryFile().convention(project.getLayout().getBuildDirectory().file("reports/content-test/summary.txt"));
             extension.getBinaries().withType(GuideContentBinary.class).forEach(contentBinary -> {
                 task.testCase(testCase -> testCase.getContentFile().set(contentBinary.getInstalledIndexPageFile()));
             });
@@ -155,7 +171,19 @@ public class GuidesDocumentationPlugin implements Plugin<Project> {
         binary.getIndexPageFile().convention(generateGuidePage.flatMap(GenerateGuidePageAsciidoc::getOutputFile));
     }
 
-    private TaskProvider<? extends Task> renderGuidesDocumentation(TaskContainer tasks, TaskProvider<Task> assemble, TaskProvider<Task> check, GuidesInternal extension, Configuration classpath) {
+    private void createPrefetchLinksTask(TaskContainer tasks, Provider<LinkCheckService> linkCheckService, GuideContentBinary binary, TaskProvider<? extends Task> renderTask) {
+        TaskProvider<PrefetchLinks> prefetchLinksTask = tasks.register(binary.getPrefetchLinksTaskName(), PrefetchLinks.class, task -> {
+            task.setDescription("Starts checking the links of guide '" + binary.getName() + "' while it is rendered");
+            task.getSourceDocument().convention(binary.getIndexPageFile());
+            task.getLinkCheckService().convention(linkCheckService);
+        });
+
+        // Links are checked in the background while rendering
+        renderTask.configure(it -> it.shouldRunAfter(prefetchLinksTask));
+        tasks.named(binary.getCheckLinksTaskName()).configure(it -> it.dependsOn(prefetchLinksTask));
+    }
+
+    private TaskProvider<? extends Task> renderGuidesDocumentation(TaskContainer tasks, ProjectLayout layout, TaskProvider<Task> assemble, TaskProvider<Task> check, GuidesInternal extension, Configuration classpath) {
         TaskProvider<Sync> assembleDocs = tasks.register("assembleGuides", Sync.class, task -> {
             task.setGroup(DOCUMENTATION_GROUP_NAME);
             task.setDescription("Assembles all intermediate files needed to generate the samples documentation.");
@@ -224,6 +252,8 @@ public class GuidesDocumentationPlugin implements Plugin<Project> {
             binary.getViewablePageFile().fileProvider(guidesMultiPage.map(it -> new File(it.getOutputDir(), binary.getRenderedPermalink().get())));
         });
 
+        createCheckInternalLinksTask(tasks, layout, "checkGuidesInternalLinks", guidesMultiPage, check);
+
         return guidesMultiPage;
     }
 
@@ -1,14 +1,29 @@
 package org.gradle.docs.internal.configure;
 
+import org.asciidoctor.gradle.AsciidoctorTask;
+import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskContainer;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.docs.internal.TestableContentBinary;
 import org.gradle.docs.internal.ViewableContentBinary;
+import org.gradle.docs.internal.exemplar.AsciidoctorContentTest;
+import org.gradle.docs.internal.links.LinkCheckMode;
+import org.gradle.docs.internal.links.LinkCheckService;
+import org.gradle.docs.internal.tasks.CheckInternalLinks;
 import org.gradle.docs.internal.tasks.CheckLinks;
 import org.gradle.docs.internal.tasks.ViewDocumentation;
 import org.gradle.language.base.plugins.LifecycleBasePlugin;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import static org.gradle.docs.internal.DocumentationBasePlugin.DOCUMENTATION_GROUP_NAME;
 import static org.gradle.docs.internal.StringUtils.capitalize;
 
@@ -21,13 +36,64 @@ public class ContentBinaries {
         });
     }
 
-    public static void createCheckTasksForContentBinary(TaskContainer tasks, TestableContentBinary binary, TaskProvider<Task> check) {
+    public static Provider<LinkCheckService> registerLinkCheckService(Project project) {
+        return LinkCheckService.registerIfAbsent(project, parameters -> {
+            parameters.getMaxConcurrentRequests().convention(projectProperty(project, "linkCheck.maxConcurrentRequests", Integer::valueOf, 16));
+            parameters.getMaxConcurrentRequestsPerHost().convention(projectProperty(project, "linkCheck.maxConcurrentRequestsPerHost", Integer::valueOf, 4));
+            parameters.getRequestTimeout().convention(projectProperty(project, "linkCheck.requestTimeout", Duration::parse, Duration.ofSeconds(30)));
+            parameters.getResultCacheFile().convention(project.getRootProject().getLayout().getBuildDirectory().file("working/link-check/results.txt"));
+            parameters.getSuccessTimeToLive().convention(projectProperty(project, "linkCheck.successTimeToLive", Duration::parse, Duration.ofHours(24)));
+            parameters.getFailureTimeToLive().convention(projectProperty(project, "linkCheck.failureTimeToLive", Duration::parse, Duration.ofHours(1)));
+            parameters.getMaxRetries().convention(projectProperty(project, "linkCheck.maxRetries", Integer::valueOf, 2));
+            parameters.getCircuitBreakerThreshold().convention(projectProperty(project, "linkCheck.circuitBreakerThreshold", Integer::valueOf, 3));
+            parameters.getMaxBackoff().convention(projectProperty(project, "linkCheck.maxBackoff", Duration::parse, Duration.ofSeconds(30)));
+            parameters.getUnavailableHostsFile().convention(project.getRootProject().getLayout().getBuildDirectory().file("working/link-check/unavailable-hosts.txt"));
+            // These hosts block web scrapers
+            parameters.getUnverifiedHosts().convention(projectProperty(project, "linkCheck.unverifiedHosts", ContentBinaries::commaSeparated, Arrays.asList("bugs.java.com", "youtrack.jetbrains.com")));
+            parameters.getReportDirectory().convention(project.getRootProject().getLayout().getBuildDirectory().dir("reports/link-check"));
+            parameters.getMode().convention(projectProperty(project, "linkCheck.mode", it -> LinkCheckMode.valueOf(it.toUpperCase()), LinkCheckMode.LIVE));
+            parameters.getFixtureFile().convention(project.getRootProject().getLayout().getProjectDirectory().file(projectProperty(project, "linkCheck.fixtureFile", it -> it, "gradle/link-check-fixture.txt")));
+        });
+    }
+
+    /**
+     * @return the Gradle versions content tests run with, from the comma separated {@code contentTest.gradleVersions} project property.
+     */
+    public static Provider<List<String>> contentTestGradleVersions(Project project) {
+        return projectProperty(project, "contentTest.gradleVersions", ContentBinaries::commaSeparated, Collections.singletonList(AsciidoctorContentTest.DEFAULT_GRADLE_VERSION));
+    }
+
+    private static List<String> commaSeparated(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(it -> !it.isEmpty()).collect(Collectors.toList());
+    }
+
+    private static <T> Provider<T> projectProperty(Project project, String name, Function<String, T> parser, T defaultValue) {
+        return project.getProviders().provider(() -> {
+            Object value = project.findProperty(name);
+            return value == null ? defaultValue : parser.apply(value.toString());
+        });
+    }
+
+    public static void createCheckTasksForContentBinary(TaskContainer tasks, ProjectLayout layout, Provider<LinkCheckService> linkCheckService, TestableContentBinary binary, TaskProvider<Task> check) {
         TaskProvider<CheckLinks> checkLinksTask = tasks.register(binary.getCheckLinksTaskName(), CheckLinks.class, task -> {
             task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
             task.setDescription("Check for any dead link in the rendered documentation");
             task.getIndexDocument().convention(binary.getRenderedPageFile());
+            task.getLinkCheckService().convention(linkCheckService);
+            task.getReportDirectory().convention(layout.getBuildDirectory().dir("reports/link-check/" + task.getName()));
         });
 
         check.configure(it -> it.dependsOn(checkLinksTask));
     }
+
+    public static void createCheckInternalLinksTask(TaskContainer tasks, ProjectLayout layout, String name, TaskProvider<AsciidoctorTask> renderTask, TaskProvider<Task> check) {
+        TaskProvider<CheckInternalLinks> checkInternalLinksTask = tasks.register(name, CheckInternalLinks.class, task -> {
+            task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+            task.setDescription("Check for any broken relative link or fragment in the rendered documentation");
+            task.getRenderedDocumentationRoot().fileProvider(renderTask.map(AsciidoctorTask::getOutputDir));
+            task.getReportFile().convention(layout.getBuildDirectory().file("reports/internal-links/" + task.getName() + ".txt"));
+        });
+
+        check.configure(it -> it.dependsOn(checkInternalLinksTask));
+    }
 }
@@ -0,0 +1,110 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+import org.asciidoctor.ast.AbstractBlock;
+import org.asciidoctor.ast.Block;
+import org.asciidoctor.ast.Document;
+import org.gradle.samples.model.Command;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the commands of the {@code sample-command} blocks of content files, with the same syntax as Exemplar's {@code AsciidoctorCommandsDiscovery},
+ * but with one Asciidoctor instance for all the content files of a work item instead of a new one, and its JRuby runtime, per file.
+ *
+ * The instance is created on first use, so work items whose commands are all cached never start JRuby, and is shut down when the work
+ * item is done. An instance that failed to load a file is replaced.
+ */
+class AsciidoctorCommandExtractor implements AutoCloseable {
+    private static final String COMMAND_PREFIX = "$ ";
+
+    private Asciidoctor asciidoctor;
+
+    /**
+     * @return the options content files are loaded with.
+     */
+    static OptionsBuilder options() {
+        return OptionsBuilder.options().safe(SafeMode.UNSAFE).attributes(attributes());
+    }
+
+    /**
+     * @return the attributes content files are loaded with, on top of the ones they define.
+     */
+    static Map<String, Object> attributes() {
+        // Asciidoctor copies the map, which the immutable maps of Collections don't support
+        return new HashMap<>();
+    }
+
+    List<Command> extract(File contentFile) {
+        if (asciidoctor == null) {
+            asciidoctor = Asciidoctor.Factory.create();
+        }
+        Document document;
+        try {
+            document = asciidoctor.loadFile(contentFile, options().asMap());
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        return extractCommands(document);
+    }
+
+    private static List<Command> extractCommands(Document document) {
+        List<Command> commands = new ArrayList<>();
+        // Blocks are found in document order, including the ones nested in lists
+        for (AbstractBlock block : document.findBy(Collections.singletonMap("role", "sample-command"))) {
+            if (block instanceof Block) {
+                parseCommands((Block) block, commands);
+            }
+        }
+        return commands;
+    }
+
+    // Each line starting with the prompt is a command, followed by its expected output up to the next command
+    private static void parseCommands(Block block, List<Command> commands) {
+        Map<String, Object> attributes = block.getAttributes();
+        String[] lines = block.source().split("\r?\n");
+        int pos = 0;
+        while (pos < lines.length) {
+            String commandLine = lines[pos];
+            if (!commandLine.startsWith(COMMAND_PREFIX)) {
+                throw new IllegalArgumentException("Sample command block doesn't start with a command: " + commandLine);
+            }
+            // Words are split on whitespace only, quotes are kept as they are, like Exemplar does
+            List<String> words = Arrays.asList(commandLine.substring(COMMAND_PREFIX.length()).trim().split("\\s+"));
+            if (words.get(0).isEmpty()) {
+                throw new IllegalArgumentException("Empty sample command.");
+            }
+
+            StringBuilder expectedOutput = new StringBuilder();
+            int next = pos + 1;
+            while (next < lines.length && !lines[next].startsWith(COMMAND_PREFIX)) {
+                if (next > pos + 1) {
+                    expectedOutput.append("\n");
+                }
+                expectedOutput.append(lines[next]);
+                next++;
+            }
+
+            commands.add(new Command(words.get(0), null, words.subList(1, words.size()), Collections.emptyList(), expectedOutput.toString(),
+                    attributes.containsKey("expect-failure"), attributes.containsKey("allow-additional-output"), attributes.containsKey("allow-disordered-output")));
+            pos = next;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (asciidoctor != null) {
+            asciidoctor.shutdown();
+            asciidoctor = null;
+        }
+    }
+}
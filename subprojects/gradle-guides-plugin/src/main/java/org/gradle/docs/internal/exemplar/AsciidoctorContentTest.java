@@ -6,6 +6,8 @@ import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.Internal;
@@ -15,11 +17,22 @@ import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class AsciidoctorContentTest extends DefaultTask {
+    /**
+     * The version of Gradle content is written for, the one of the Gradle installation plain {@code gradle} commands run.
+     */
+    public static final String DEFAULT_GRADLE_VERSION = "6.0.1";
+
+    private static final Duration MAX_UNUSED_CACHE_ENTRY_TIME = Duration.ofDays(7);
+
     private final List<AsciidoctorContentTestCase> testCases = new ArrayList<>();
 
     @Nested
@@ -41,22 +54,148 @@ public abstract class AsciidoctorContentTest extends DefaultTask {
     @Classpath
     public abstract ConfigurableFileCollection getClasspath();
 
+    /**
+     * @return the directory holding the Gradle user home of each tested Gradle version, with its distributions and daemons.
+     */
     @Internal
     public abstract DirectoryProperty getGradleUserHomeDirectoryForTesting();
 
+    /**
+     * @return the versions of Gradle the test cases run with. The test cases of each version run in parallel with the other versions.
+     */
+    @Internal
+    public abstract ListProperty<String> getGradleVersions();
+
+    /**
+     * @return the directory caching the output of the commands of the test cases and their changes to the sample, commands aren't cached if not set.
+     */
+    @Internal
+    public abstract DirectoryProperty getCommandResultCacheDirectory();
+
+    /**
+     * @return the directory caching the commands found in content files, content files are always parsed if not set.
+     */
+    @Internal
+    public abstract DirectoryProperty getCommandExtractionCacheDirectory();
+
+    /**
+     * @return the number of test cases run one after another by a single work item, work items run in parallel. Ignored when forking.
+     */
+    @Internal
+    public abstract Property<Integer> getBatchSize();
+
+    /**
+     * @return the number of worker processes the test cases of each Gradle version are spread over, test cases run in the Gradle daemon when 0.
+     */
+    @Internal
+    public abstract Property<Integer> getMaxParallelForks();
+
+    /**
+     * @return the maximum heap size of each worker process, e.g. {@code 512m}.
+     */
+    @Internal
+    public abstract Property<String> getForkMaxHeapSize();
+
+    /**
+     * @return the file recording how long each test case took, used to spread test cases evenly over worker processes.
+     */
+    @Internal
+    public abstract RegularFileProperty getDurationsFile();
+
+    /**
+     * @return the file summarizing how many test cases passed and failed with each Gradle version, and how long they took.
+     */
+    @Internal
+    public abstract RegularFileProperty getSummaryFile();
+
     @Inject
     protected abstract WorkerExecutor getWorkerExecutor();
 
     @TaskAction
     private void doTest() throws IOException {
-        WorkQueue workQueue = getWorkerExecutor().classLoaderIsolation(spec -> {
-            spec.getClasspath().from(getClasspath());
-        });
-
-        workQueue.submit(AsciidoctorContentTestWorkerAction.class, parameter -> {
-            parameter.getTestCases().set(testCases);
-            parameter.getWorkspaceDirectory().set(getTemporaryDir());
-            parameter.getGradleUserHomeDirectory().set(getGradleUserHomeDirectoryForTesting());
-        });
+        List<String> gradleVersions = getGradleVersions().get();
+        if (gradleVersions.isEmpty()) {
+            throw new IllegalArgumentException("At least one Gradle version must be tested.");
+        }
+        int forks = getMaxParallelForks().get();
+        WorkQueue workQueue;
+        List<List<AsciidoctorContentTestCase>> batches;
+        ContentTestDurations durations = ContentTestDurations.load(getDurationsFile().get().getAsFile());
+        if (forks > 0) {
+            // Each shard runs in its own worker process, the longest shard sets the duration of the task
+            workQueue = getWorkerExecutor().processIsolation(spec -> {
+                spec.getClasspath().from(getClasspath());
+                spec.forkOptions(options -> options.setMaxHeapSize(getForkMaxHeapSize().get()));
+            });
+            batches = durations.shard(testCases, forks);
+        } else {
+            workQueue = getWorkerExecutor().classLoaderIsolation(spec -> {
+                spec.getClasspath().from(getClasspath());
+            });
+            batches = batches(getBatchSize().get());
+        }
+
+        if (getCommandResultCacheDirectory().isPresent()) {
+            CommandResultCache.prune(getCommandResultCacheDirectory().get().getAsFile(), MAX_UNUSED_CACHE_ENTRY_TIME);
+        }
+        if (getCommandExtractionCacheDirectory().isPresent()) {
+            CommandExtractionCache.prune(getCommandExtractionCacheDirectory().get().getAsFile(), MAX_UNUSED_CACHE_ENTRY_TIME);
+        }
+        // Sandboxes are shared by all the work items of a worker, whatever their Gradle version
+        File workspaceDirectory = new File(getTemporaryDir(), "workspace");
+        List<File> durationsFiles = new ArrayList<>();
+        List<File> resultsFiles = new ArrayList<>();
+        // Work items of all Gradle versions share the queue, the installed samples and the caches. Each version has its own Gradle user home,
+        // so its distribution is only downloaded once and the daemons of a version are reused by its following commands
+        for (String gradleVersion : gradleVersions) {
+            for (int i = 0; i < batches.size(); i++) {
+                List<AsciidoctorContentTestCase> batch = batches.get(i);
+                File workItemDirectory = new File(getTemporaryDir(), gradleVersion + "/work-item-" + i);
+                File durationsFile = new File(workItemDirectory, "durations.txt");
+                File resultsFile = new File(workItemDirectory, "results.txt");
+                durationsFile.delete();
+                resultsFile.delete();
+                durationsFiles.add(durationsFile);
+                resultsFiles.add(resultsFile);
+                workQueue.submit(AsciidoctorContentTestWorkerAction.class, parameter -> {
+                    parameter.getTestCases().set(batch);
+                    parameter.getWorkspaceDirectory().set(workspaceDirectory);
+                    parameter.getGradleUserHomeDirectory().set(getGradleUserHomeDirectoryForTesting().dir(gradleVersion));
+                    parameter.getGradleVersion().set(gradleVersion);
+                    parameter.getCommandResultCacheDirectory().set(getCommandResultCacheDirectory());
+                    parameter.getCommandExtractionCacheDirectory().set(getCommandExtractionCacheDirectory());
+                    parameter.getDurationsFile().set(durationsFile);
+                    parameter.getResultsFile().set(resultsFile);
+                });
+            }
+        }
+
+        try {
+            // Failures of all work items are reported together once they all completed
+            workQueue.await();
+        } finally {
+            // Also record the durations of failed test cases, they take as long on the next run
+            durationsFiles.stream().filter(File::isFile).forEach(it -> durations.merge(ContentTestDurations.load(it)));
+            durations.save(getDurationsFile().get().getAsFile());
+
+            ContentTestResults results = new ContentTestResults();
+            resultsFiles.stream().filter(File::isFile).forEach(it -> results.merge(ContentTestResults.load(it)));
+            String summary = results.summary(gradleVersions);
+            File summaryFile = getSummaryFile().get().getAsFile();
+            Files.createDirectories(summaryFile.getParentFile().toPath());
+            Files.write(summaryFile.toPath(), summary.getBytes(StandardCharsets.UTF_8));
+            getLogger().lifecycle(summary);
+        }
+    }
+
+    private List<List<AsciidoctorContentTestCase>> batches(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size of content tests must be at least 1.");
+        }
+        List<List<AsciidoctorContentTestCase>> batches = new ArrayList<>();
+        for (int i = 0; i < testCases.size(); i += batchSize) {
+            batches.add(testCases.subList(i, Math.min(i + batchSize, testCases.size())));
+        }
+        return batches;
     }
 }
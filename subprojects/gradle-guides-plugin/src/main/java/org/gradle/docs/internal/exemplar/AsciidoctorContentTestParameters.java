@@ -1,7 +1,9 @@
 package org.gradle.docs.internal.exemplar;
 
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.workers.WorkParameters;
 
 public interface AsciidoctorContentTestParameters extends WorkParameters {
@@ -10,4 +12,14 @@ public interface AsciidoctorContentTestParameters extends WorkParameters {
     DirectoryProperty getWorkspaceDirectory();
 
     DirectoryProperty getGradleUserHomeDirectory();
+
+    Property<String> getGradleVersion();
+
+    DirectoryProperty getCommandResultCacheDirectory();
+
+    DirectoryProperty getCommandExtractionCacheDirectory();
+
+    RegularFileProperty getDurationsFile();
+
+    RegularFileProperty getResultsFile();
 }
@@ -0,0 +1,177 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Executes the simple shell commands guides use to show or prepare files in the current process, without the cost of a new process.
+ *
+ * Only {@code echo}, {@code cat}, {@code ls}, {@code mkdir} and {@code tree} are supported, without any option except {@code mkdir -p},
+ * and with at most one path for {@code ls} and {@code tree}. Any other form, and any command expected to fail, is left to the forking
+ * executor, as builtins don't reproduce the exit codes and error output of the real commands. Arguments are never expanded, as is the
+ * case when forking. Listings are sorted by the UTF-8 bytes of the names like the C locale does, and {@code tree} always draws with
+ * line characters.
+ */
+class BuiltinCommandExecutor implements CommandExecutor {
+    private static final String BRANCH = "\u251c\u2500\u2500 ";
+    private static final String LAST_BRANCH = "\u2514\u2500\u2500 ";
+    private static final String INDENT = "\u2502   ";
+    private static final String LAST_INDENT = "    ";
+
+    @Override
+    public boolean canExecute(Command command) {
+        if (command.isExpectFailure()) {
+            return false;
+        }
+        List<String> args = command.getArgs();
+        boolean hasOptions = args.stream().anyMatch(it -> it.startsWith("-"));
+        switch (command.getExecutable()) {
+            case "echo":
+            case "cat":
+                return !hasOptions;
+            case "mkdir":
+                return !args.isEmpty() && args.subList(args.get(0).equals("-p") ? 1 : 0, args.size()).stream().noneMatch(it -> it.startsWith("-"));
+            case "ls":
+            case "tree":
+                return !hasOptions && args.size() <= 1;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void execute(Command command, CommandContext context) throws IOException {
+        File workingDir = context.getWorkingDirectory(command);
+        List<String> args = command.getArgs();
+        String output;
+        switch (command.getExecutable()) {
+            case "echo":
+                output = String.join(" ", args) + "\n";
+                break;
+            case "cat":
+                output = cat(workingDir, args);
+                break;
+            case "mkdir":
+                output = mkdir(workingDir, args);
+                break;
+            case "ls":
+                output = ls(workingDir, args.isEmpty() ? "." : args.get(0));
+                break;
+            case "tree":
+                output = tree(workingDir, args.isEmpty() ? "." : args.get(0));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported builtin command '" + command.getExecutable() + "'.");
+        }
+        ForkingCommandExecutor.verifyOutput(command, output);
+    }
+
+    private static String cat(File workingDir, List<String> paths) throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String path : paths) {
+            File file = resolve(workingDir, path);
+            if (!file.isFile()) {
+                throw failure("cat", path, file.isDirectory() ? "Is a directory" : "No such file or directory");
+            }
+            // Decoded like the output of a forked process
+            output.append(new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset()));
+        }
+        return output.toString();
+    }
+
+    private static String mkdir(File workingDir, List<String> args) throws IOException {
+        boolean parents = args.get(0).equals("-p");
+        for (String path : args.subList(parents ? 1 : 0, args.size())) {
+            File directory = resolve(workingDir, path);
+            if (parents) {
+                Files.createDirectories(directory.toPath());
+            } else if (directory.exists()) {
+                throw failure("mkdir", path, "File exists");
+            } else if (!directory.getParentFile().isDirectory()) {
+                throw failure("mkdir", path, "No such file or directory");
+            } else {
+                Files.createDirectory(directory.toPath());
+            }
+        }
+        return "";
+    }
+
+    private static String ls(File workingDir, String path) {
+        File file = resolve(workingDir, path);
+        if (file.isFile()) {
+            return path + "\n";
+        }
+        if (!file.isDirectory()) {
+            throw failure("ls", path, "No such file or directory");
+        }
+        return children(file).stream().map(it -> it.getName() + "\n").collect(Collectors.joining());
+    }
+
+    private static String tree(File workingDir, String path) {
+        File root = resolve(workingDir, path);
+        if (!root.isDirectory()) {
+            throw failure("tree", path, "No such directory");
+        }
+        StringBuilder output = new StringBuilder(path).append('\n');
+        int[] counts = new int[2];
+        tree(root, "", output, counts);
+        output.append('\n')
+                .append(counts[0]).append(counts[0] == 1 ? " directory, " : " directories, ")
+                .append(counts[1]).append(counts[1] == 1 ? " file" : " files").append('\n');
+        return output.toString();
+    }
+
+    private static void tree(File directory, String prefix, StringBuilder output, int[] counts) {
+        List<File> children = children(directory);
+        for (int i = 0; i < children.size(); i++) {
+            File child = children.get(i);
+            boolean last = i == children.size() - 1;
+            output.append(prefix).append(last ? LAST_BRANCH : BRANCH).append(child.getName()).append('\n');
+            if (child.isDirectory()) {
+                counts[0]++;
+                tree(child, prefix + (last ? LAST_INDENT : INDENT), output, counts);
+            } else {
+                counts[1]++;
+            }
+        }
+    }
+
+    // Hidden files are left out and names are sorted by their bytes, like ls and tree do with the C locale
+    private static List<File> children(File directory) {
+        File[] children = directory.listFiles(it -> !it.getName().startsWith("."));
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(children, (a, b) -> compareBytes(a.getName().getBytes(StandardCharsets.UTF_8), b.getName().getBytes(StandardCharsets.UTF_8)));
+        return Arrays.asList(children);
+    }
+
+    // String.compareTo compares UTF-16 units, which orders names beyond the BMP differently than their UTF-8 bytes
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int result = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static File resolve(File workingDir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(workingDir, path);
+    }
+
+    private static RuntimeException failure(String executable, String path, String reason) {
+        return new RuntimeException(executable + ": " + path + ": " + reason);
+    }
+}
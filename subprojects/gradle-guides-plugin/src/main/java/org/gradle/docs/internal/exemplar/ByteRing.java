@@ -0,0 +1,212 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded pipe between writing threads and one reading thread, used to connect the standard streams of interactive builds.
+ *
+ * Unlike {@link java.io.PipedInputStream}, bytes are handed over to the reader without locking and a blocked side is woken up as soon as
+ * the other side makes progress instead of polling every second. Writes are serialized, so several threads can share the writing side,
+ * e.g. when the same stream receives the standard output and error of a build. The reading side must be used by a single thread at a time.
+ *
+ * Once the reading side is closed, further writes are discarded so a build still writing output never blocks on it. Once the writing side
+ * is closed, the reading side reads what's left and then reaches the end of the stream.
+ */
+class ByteRing {
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private final int mask;
+    // Total number of bytes written and read, only ever updated by their own side
+    private volatile long writePosition;
+    private volatile long readPosition;
+    private volatile boolean writerClosed;
+    private volatile boolean readerClosed;
+    private volatile Thread waitingWriter;
+    private volatile Thread waitingReader;
+    private final Object writeLock = new Object();
+    private final InputStream inputStream = new RingInputStream();
+    private final OutputStream outputStream = new RingOutputStream();
+
+    ByteRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of bytes the ring can hold, rounded up to a power of two
+     */
+    ByteRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity of a byte ring must be between 1 and 2^30 bytes, got " + capacity + ".");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Reads the bytes available right away, without blocking.
+     *
+     * @return the number of bytes read, possibly 0, or -1 if the writing side is closed and everything was read.
+     */
+    int poll(byte[] bytes, int offset, int length) {
+        long read = readPosition;
+        // Read the closed flag first, so no byte written before closing is missed
+        boolean closed = writerClosed;
+        int available = (int) (writePosition - read);
+        if (available == 0) {
+            return closed ? -1 : 0;
+        }
+        int count = Math.min(available, length);
+        int start = (int) (read & mask);
+        int firstPart = Math.min(count, buffer.length - start);
+        System.arraycopy(buffer, start, bytes, offset, firstPart);
+        System.arraycopy(buffer, 0, bytes, offset + firstPart, count - firstPart);
+        readPosition = read + count;
+        LockSupport.unpark(waitingWriter);
+        return count;
+    }
+
+    /**
+     * Reads at least one byte, blocking until some are available.
+     *
+     * @return the number of bytes read, or -1 if the writing side is closed and everything was read.
+     */
+    int read(byte[] bytes, int offset, int length) throws InterruptedIOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            int count = poll(bytes, offset, length);
+            if (count != 0) {
+                return count;
+            }
+            waitingReader = Thread.currentThread();
+            try {
+                // Check again now that the writer can see us waiting, it may have written in between
+                if (writePosition == readPosition && !writerClosed) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waitingReader = null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Interrupted while reading from byte ring.");
+            }
+        }
+    }
+
+    /**
+     * Writes all bytes, blocking while the ring is full. The bytes of concurrent writes are never interleaved.
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        synchronized (writeLock) {
+            doWrite(bytes, offset, length);
+        }
+    }
+
+    private void doWrite(byte[] bytes, int offset, int length) throws IOException {
+        if (writerClosed) {
+            throw new IOException("The byte ring was closed for writing.");
+        }
+        int remaining = length;
+        while (remaining > 0) {
+            if (readerClosed) {
+                return;
+            }
+            long written = writePosition;
+            int free = buffer.length - (int) (written - readPosition);
+            if (free == 0) {
+                waitingWriter = Thread.currentThread();
+                try {
+                    if (writePosition - readPosition == buffer.length && !readerClosed) {
+                        LockSupport.park(this);
+                    }
+                } finally {
+                    waitingWriter = null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while writing to byte ring.");
+                }
+                continue;
+            }
+            int count = Math.min(free, remaining);
+            int start = (int) (written & mask);
+            int firstPart = Math.min(count, buffer.length - start);
+            System.arraycopy(bytes, offset, buffer, start, firstPart);
+            System.arraycopy(bytes, offset + firstPart, buffer, 0, count - firstPart);
+            writePosition = written + count;
+            offset += count;
+            remaining -= count;
+            LockSupport.unpark(waitingReader);
+        }
+    }
+
+    private class RingInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int count = read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return ByteRing.this.read(bytes, offset, length);
+        }
+
+        @Override
+        public int available() {
+            return (int) (writePosition - readPosition);
+        }
+
+        @Override
+        public void close() {
+            readerClosed = true;
+            LockSupport.unpark(waitingWriter);
+        }
+    }
+
+    private class RingOutputStream extends OutputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteRing.this.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() {
+            synchronized (writeLock) {
+                writerClosed = true;
+            }
+            LockSupport.unpark(waitingReader);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+
+import java.io.IOException;
+
+class ChangeDirectoryCommandExecutor implements CommandExecutor {
+    @Override
+    public boolean canExecute(Command command) {
+        return command.getExecutable().equals("cd");
+    }
+
+    @Override
+    public void execute(Command command, CommandContext context) throws IOException {
+        context.changeDirectory(command.getArgs().get(0));
+    }
+}
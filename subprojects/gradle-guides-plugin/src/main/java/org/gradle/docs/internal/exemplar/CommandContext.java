@@ -0,0 +1,121 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.process.ExecOperations;
+import org.gradle.samples.model.Command;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The state shared by the commands of a test case, as they run one after the other in the same sandbox.
+ */
+class CommandContext {
+    private static final Logger LOGGER = Logging.getLogger(CommandContext.class);
+
+    private final File sandboxDirectory;
+    private final File gradleUserHomeDirectory;
+    private final String gradleVersion;
+    private final SeededSample sample;
+    private final CommandResultCache cache;
+    private final ExecOperations execOperations;
+    private final ToolingApiConnectionPool connectionPool;
+    private File baseWorkingDirectory;
+    private Command command;
+    private String stateKey;
+    private boolean cacheable;
+
+    CommandContext(File sandboxDirectory, File gradleUserHomeDirectory, String gradleVersion, SeededSample sample, CommandResultCache cache, String seedKey, ExecOperations execOperations, ToolingApiConnectionPool connectionPool) {
+        this.sandboxDirectory = sandboxDirectory;
+        this.gradleUserHomeDirectory = gradleUserHomeDirectory;
+        this.gradleVersion = gradleVersion;
+        this.sample = sample;
+        this.cache = cache;
+        this.execOperations = execOperations;
+        this.connectionPool = connectionPool;
+        this.baseWorkingDirectory = sandboxDirectory;
+        this.stateKey = seedKey;
+    }
+
+    /**
+     * @return the directory the sample was seeded in, also used as the home directory of the commands.
+     */
+    File getSandboxDirectory() {
+        return sandboxDirectory;
+    }
+
+    File getGradleUserHomeDirectory() {
+        return gradleUserHomeDirectory;
+    }
+
+    /**
+     * @return the version of Gradle the commands run with.
+     */
+    String getGradleVersion() {
+        return gradleVersion;
+    }
+
+    SeededSample getSample() {
+        return sample;
+    }
+
+    ExecOperations getExecOperations() {
+        return execOperations;
+    }
+
+    ToolingApiConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    File getWorkingDirectory(Command command) {
+        if (command.getExecutionSubdirectory() != null) {
+            return new File(baseWorkingDirectory, command.getExecutionSubdirectory());
+        }
+        return baseWorkingDirectory;
+    }
+
+    /**
+     * Changes the directory the following commands run in, relative to the current one.
+     */
+    void changeDirectory(String path) throws IOException {
+        baseWorkingDirectory = new File(baseWorkingDirectory, path).getCanonicalFile();
+    }
+
+    /**
+     * Records that the command is about to run, so the state of the sandbox after it has its own key in the command result cache.
+     *
+     * @param cacheable whether the command may be replayed from the cache
+     */
+    void advance(Command command, boolean cacheable) {
+        this.command = command;
+        this.cacheable = cacheable;
+        String workingDirectory = sandboxDirectory.toPath().relativize(getWorkingDirectory(command).toPath()).toString().replace(File.separatorChar, '/');
+        stateKey = CommandResultCache.commandKey(stateKey, workingDirectory, command, gradleVersion);
+    }
+
+    /**
+     * Replays the current command from the cache when it's there, otherwise executes it and caches its output and changes to the sandbox.
+     * The sample is materialized before executing the command when it may write to the files linked to the installed sample.
+     */
+    String runCached(Execution execution) throws IOException {
+        if (cache == null || !cacheable) {
+            sample.prepareFor(command);
+            return execution.execute();
+        }
+        String output = cache.replay(stateKey, sandboxDirectory);
+        if (output != null) {
+            LOGGER.info("Replayed command from the command result cache");
+            return output;
+        }
+        sample.prepareFor(command);
+        CommandResultCache.Snapshot before = CommandResultCache.Snapshot.of(sandboxDirectory);
+        output = execution.execute();
+        cache.store(stateKey, sandboxDirectory, before, output);
+        return output;
+    }
+
+    interface Execution {
+        String execute();
+    }
+}
@@ -0,0 +1,17 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+
+import java.io.IOException;
+
+/**
+ * Executes the content test commands of a given kind and verifies their output.
+ *
+ * Each command is executed by the first executor of the worker that can execute it, so executors handling a narrow set of commands come
+ * before the more general ones.
+ */
+interface CommandExecutor {
+    boolean canExecute(Command command);
+
+    void execute(Command command, CommandContext context) throws IOException;
+}
@@ -0,0 +1,248 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the commands found in content files, so unchanged content files are not parsed by Asciidoctor again.
+ *
+ * The key of a content file is a hash of its content, of the content of the files it includes, of the options commands are extracted with
+ * and of the version of the Command model. Attributes in include targets, like {@code {samples-dir}}, are resolved from the attributes
+ * of the extraction options, the {@code docdir} of the content file and the attribute entries met so far, as Asciidoctor does.
+ * Content files including a file through an attribute that can't be resolved that way are always parsed.
+ */
+class CommandExtractionCache {
+    private static final int FORMAT_VERSION = 5;
+    private static final String OPTIONS = new TreeMap<>(AsciidoctorCommandExtractor.options().asMap()).toString();
+    private static final Pattern INCLUDE = Pattern.compile("^include::([^\\[]+)\\[");
+    private static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:(!?)(\\w[\\w-]*)(!?):(?:[ \\t]+(.*))?$");
+    private static final Pattern ATTRIBUTE_REFERENCE = Pattern.compile("\\{(\\w[\\w-]*)}");
+
+    private final File directory;
+
+    CommandExtractionCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the commands of the content file, parsing it with the extractor only if it isn't cached.
+     */
+    static List<Command> extract(CommandExtractionCache cache, AsciidoctorCommandExtractor extractor, File contentFile) throws IOException {
+        String key = cache == null ? null : keyOf(contentFile);
+        if (key == null) {
+            return extractor.extract(contentFile);
+        }
+
+        File entry = new File(cache.directory, key + ".bin");
+        if (entry.isFile()) {
+            // Used entries are kept, see prune
+            entry.setLastModified(System.currentTimeMillis());
+            return read(entry);
+        }
+        List<Command> commands = extractor.extract(contentFile);
+        cache.write(entry, commands);
+        return commands;
+    }
+
+    /**
+     * Deletes the entries that weren't used for the given time.
+     */
+    static void prune(File directory, Duration maxUnusedTime) {
+        long oldest = System.currentTimeMillis() - maxUnusedTime.toMillis();
+        File[] entries = directory.listFiles(it -> it.isFile() && it.lastModified() < oldest);
+        if (entries != null) {
+            for (File entry : entries) {
+                entry.delete();
+            }
+        }
+    }
+
+    private static String keyOf(File contentFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((FORMAT_VERSION + "\n" + OPTIONS + "\n" + Command.class.getPackage().getImplementationVersion() + "\n").getBytes(StandardCharsets.UTF_8));
+        Map<String, String> attributes = new HashMap<>();
+        AsciidoctorCommandExtractor.attributes().forEach((name, value) -> attributes.put(name.toLowerCase(Locale.ROOT), String.valueOf(value)));
+        attributes.put("docdir", contentFile.getCanonicalFile().getParent());
+        if (!hashWithIncludes(contentFile, digest, attributes, new HashSet<>())) {
+            return null;
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static boolean hashWithIncludes(File file, MessageDigest digest, Map<String, String> attributes, Set<File> visited) throws IOException {
+        File canonicalFile = file.getCanonicalFile();
+        if (!visited.add(canonicalFile)) {
+            return true;
+        }
+        byte[] content = Files.readAllBytes(canonicalFile.toPath());
+        digest.update(canonicalFile.getName().getBytes(StandardCharsets.UTF_8));
+        digest.update(content);
+
+        // Attribute entries only apply to the lines after them, including the ones of included files
+        for (String line : new String(content, StandardCharsets.UTF_8).split("\r?\n")) {
+            Matcher entry = ATTRIBUTE_ENTRY.matcher(line);
+            if (entry.matches()) {
+                String name = entry.group(2).toLowerCase(Locale.ROOT);
+                if (entry.group(1).isEmpty() && entry.group(3).isEmpty()) {
+                    attributes.put(name, resolve(entry.group(4) == null ? "" : entry.group(4).trim(), attributes));
+                } else {
+                    attributes.remove(name);
+                }
+                continue;
+            }
+            Matcher include = INCLUDE.matcher(line);
+            if (!include.find()) {
+                continue;
+            }
+            String target = resolve(include.group(1), attributes);
+            if (target.contains("{") || target.contains("://")) {
+                return false;
+            }
+            File included = new File(target).isAbsolute() ? new File(target) : new File(canonicalFile.getParentFile(), target);
+            if (included.isFile()) {
+                if (!hashWithIncludes(included, digest, attributes, visited)) {
+                    return false;
+                }
+            } else {
+                // Missing includes are reported by Asciidoctor, and may appear later
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Unknown attributes are left as they are, like Asciidoctor does by default
+    private static String resolve(String value, Map<String, String> attributes) {
+        Matcher reference = ATTRIBUTE_REFERENCE.matcher(value);
+        StringBuffer result = new StringBuffer();
+        while (reference.find()) {
+            String replacement = attributes.get(reference.group(1).toLowerCase(Locale.ROOT));
+            reference.appendReplacement(result, Matcher.quoteReplacement(replacement == null ? reference.group() : replacement));
+        }
+        reference.appendTail(result);
+        return result.toString();
+    }
+
+    private static List<Command> read(File entry) throws IOException {
+        try (DataInputStream inStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+            if (inStream.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format of command extraction cache entry " + entry);
+            }
+            int count = inStream.readInt();
+            List<Command> commands = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String executable = readString(inStream);
+                String executionSubdirectory = readString(inStream);
+                List<String> args = readStrings(inStream);
+                List<String> flags = readStrings(inStream);
+                String expectedOutput = readString(inStream);
+                boolean expectFailure = inStream.readBoolean();
+                boolean allowAdditionalOutput = inStream.readBoolean();
+                boolean allowDisorderedOutput = inStream.readBoolean();
+                commands.add(new Command(executable, executionSubdirectory, args, flags, expectedOutput, expectFailure, allowAdditionalOutput, allowDisorderedOutput));
+            }
+            return commands;
+        }
+    }
+
+    private void write(File entry, List<Command> commands) throws IOException {
+        Path temporaryFile = new File(directory, "tmp-" + UUID.randomUUID()).toPath();
+        Files.createDirectories(directory.toPath());
+        try {
+            try (DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                outStream.writeInt(FORMAT_VERSION);
+                outStream.writeInt(commands.size());
+                for (Command command : commands) {
+                    writeString(outStream, command.getExecutable());
+                    writeString(outStream, command.getExecutionSubdirectory());
+                    writeStrings(outStream, command.getArgs());
+                    writeStrings(outStream, command.getFlags());
+                    writeString(outStream, command.getExpectedOutput());
+                    outStream.writeBoolean(command.isExpectFailure());
+                    outStream.writeBoolean(command.isAllowAdditionalOutput());
+                    outStream.writeBoolean(command.isAllowDisorderedOutput());
+                }
+            }
+            try {
+                Files.move(temporaryFile, entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    // Strings are written as their UTF-8 bytes, expected outputs may be longer than what DataOutputStream.writeUTF supports
+    private static void writeString(DataOutputStream outStream, String value) throws IOException {
+        if (value == null) {
+            outStream.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outStream.writeInt(bytes.length);
+        outStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inStream) throws IOException {
+        int length = inStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        inStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream outStream, List<String> values) throws IOException {
+        outStream.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (String value : values) {
+                writeString(outStream, value);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream inStream) throws IOException {
+        int count = inStream.readInt();
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(inStream));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,346 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.samples.model.Command;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Caches the output of content test commands and the changes they made to the sandbox, so a command that already ran against the same
+ * sandbox is replayed instead of executed.
+ *
+ * The key of a command is a hash of the key of the state of the sandbox before it, its working directory, executable and arguments, the
+ * Gradle and Java versions and the environment variables commands are sensitive to. The state of a freshly seeded sandbox is keyed by the
+ * content of the sample. As each command is deterministic given those, a test case replays the commands it has in common with a previous run
+ * and executes everything from the first command that differs onwards. Only the output is cached, it is still verified against the expected
+ * output of the current content. Changes are found by comparing the content of the files before and after the command.
+ *
+ * The {@code .gradle} and {@code build} directories are build outputs, with many files a build rewrites as a whole. They aren't hashed,
+ * a change to any of their files, by path, size and modification time, is recorded as a new copy of the whole directory, replacing the
+ * directory on replay.
+ *
+ * Each entry is a directory named after its key holding the output, a manifest of the deleted paths and created directories, a copy of
+ * every file created or changed by the command and of every changed build output directory. Entries are written to a temporary directory and moved in place, so work items can share
+ * the cache. Absolute paths to the sandbox in the output are stored as a placeholder, as the sandbox may be another directory on replay.
+ */
+class CommandResultCache {
+    private static final String FORMAT_VERSION = "3";
+    private static final List<String> ENVIRONMENT_VARIABLES = Arrays.asList("PATH", "JAVA_HOME", "JAVA_OPTS", "JAVA_TOOL_OPTIONS", "GRADLE_OPTS", "LANG", "LC_ALL", "TERM");
+    private static final String SANDBOX_PLACEHOLDER = "@@SANDBOX@@";
+    private static final String OUTPUT_FILE = "output.txt";
+    private static final String MANIFEST_FILE = "manifest.txt";
+    private static final String FILES_DIRECTORY = "files";
+    private static final String BUILD_OUTPUTS_DIRECTORY = "build-outputs";
+    private static final Set<String> BUILD_OUTPUT_DIRECTORY_NAMES = new HashSet<>(Arrays.asList(".gradle", "build"));
+
+    private final File directory;
+
+    CommandResultCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the key of the state of a sandbox seeded from the given sample, or of an empty sandbox if there's no sample. Each installed file
+     * is only hashed again when its size or modification time changed.
+     */
+    static String seedKey(File sample) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("seed " + FORMAT_VERSION);
+        if (sample != null) {
+            for (Map.Entry<String, Path> file : listFiles(sample.toPath()).entrySet()) {
+                lines.add(file.getKey() + " " + FileHashes.installedFile(file.getValue()).getHash());
+            }
+        }
+        return hash(lines);
+    }
+
+    /**
+     * @return the key of the command when run in the given directory of the sandbox, which is also the key of the state of the sandbox after it.
+     */
+    static String commandKey(String stateKey, String workingDirectory, Command command, String gradleVersion) {
+        List<String> lines = new ArrayList<>();
+        lines.add("command " + FORMAT_VERSION);
+        lines.add(stateKey);
+        lines.add(workingDirectory);
+        lines.add(command.getExecutable());
+        lines.addAll(command.getArgs());
+        lines.add(gradleVersion);
+        lines.add(System.getProperty("java.version"));
+        lines.add(System.getProperty("os.name"));
+        for (String name : ENVIRONMENT_VARIABLES) {
+            lines.add(name + "=" + System.getenv(name));
+        }
+        return hash(lines);
+    }
+
+    /**
+     * Applies the changes recorded for the command to the sandbox.
+     *
+     * @return the output of the command, or {@code null} if the command isn't cached.
+     */
+    String replay(String key, File sandbox) throws IOException {
+        File entry = entryDirectory(key);
+        File outputFile = new File(entry, OUTPUT_FILE);
+        if (!outputFile.isFile()) {
+            return null;
+        }
+        // Used entries are kept, see prune
+        Files.setLastModifiedTime(entry.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+
+        Path sandboxPath = sandbox.toPath();
+        for (String line : Files.readAllLines(new File(entry, MANIFEST_FILE).toPath(), StandardCharsets.UTF_8)) {
+            Path path = sandboxPath.resolve(line.substring(2));
+            if (line.startsWith("D ")) {
+                FileUtils.deleteQuietly(path.toFile());
+            } else if (line.startsWith("M ")) {
+                Files.createDirectories(path);
+            } else if (line.startsWith("O ")) {
+                FileUtils.deleteQuietly(path.toFile());
+                FileUtils.copyDirectory(new File(new File(entry, BUILD_OUTPUTS_DIRECTORY), line.substring(2)), path.toFile(), true);
+            }
+        }
+        Path files = new File(entry, FILES_DIRECTORY).toPath();
+        for (Map.Entry<String, Path> file : listFiles(files).entrySet()) {
+            Path target = sandboxPath.resolve(file.getKey());
+            Files.createDirectories(target.getParent());
+            // Replacing deletes the target first, so files linked to the installed sample are left alone
+            Files.copy(file.getValue(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8).replace(SANDBOX_PLACEHOLDER, sandbox.getAbsolutePath());
+    }
+
+    /**
+     * Records the output of the command and the changes it made to the sandbox since the given snapshot was taken.
+     */
+    void store(String key, File sandbox, Snapshot before, String output) throws IOException {
+        File entry = entryDirectory(key);
+        if (entry.isDirectory()) {
+            return;
+        }
+        Snapshot after = Snapshot.of(sandbox);
+        File temporaryEntry = new File(directory, "tmp-" + UUID.randomUUID());
+        Path files = new File(temporaryEntry, FILES_DIRECTORY).toPath();
+        List<String> manifest = new ArrayList<>();
+        try {
+            Files.createDirectories(files);
+            Path sandboxPath = sandbox.toPath();
+            for (Map.Entry<String, FileState> state : after.states.entrySet()) {
+                FileState previous = before.states.get(state.getKey());
+                if (state.getValue().directory) {
+                    if (previous == null || !previous.directory) {
+                        manifest.add("M " + state.getKey());
+                    }
+                } else if (!state.getValue().equals(previous)) {
+                    Path target = files.resolve(state.getKey());
+                    Files.createDirectories(target.getParent());
+                    Files.copy(sandboxPath.resolve(state.getKey()), target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+            for (Map.Entry<String, FileState> state : before.states.entrySet()) {
+                FileState current = after.states.get(state.getKey());
+                if (current == null || current.directory != state.getValue().directory) {
+                    manifest.add("D " + state.getKey());
+                }
+            }
+            for (Map.Entry<String, String> buildOutput : after.buildOutputs.entrySet()) {
+                if (!buildOutput.getValue().equals(before.buildOutputs.get(buildOutput.getKey()))) {
+                    manifest.add("O " + buildOutput.getKey());
+                    FileUtils.copyDirectory(sandboxPath.resolve(buildOutput.getKey()).toFile(), new File(new File(temporaryEntry, BUILD_OUTPUTS_DIRECTORY), buildOutput.getKey()), true);
+                }
+            }
+            for (String buildOutput : before.buildOutputs.keySet()) {
+                if (!after.buildOutputs.containsKey(buildOutput)) {
+                    manifest.add("D " + buildOutput);
+                }
+            }
+            // Deletions are applied first on replay
+            manifest.sort(Comparator.<String, Boolean>comparing(it -> it.charAt(0) != 'D').thenComparing(Comparator.naturalOrder()));
+            Files.write(new File(temporaryEntry, MANIFEST_FILE).toPath(), manifest, StandardCharsets.UTF_8);
+            Files.write(new File(temporaryEntry, OUTPUT_FILE).toPath(), output.replace(sandbox.getAbsolutePath(), SANDBOX_PLACEHOLDER).getBytes(StandardCharsets.UTF_8));
+
+            Files.createDirectories(entry.getParentFile().toPath());
+            Files.move(temporaryEntry.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // Another work item stored the same command in the meantime
+        } finally {
+            FileUtils.deleteQuietly(temporaryEntry);
+        }
+    }
+
+    /**
+     * Deletes the entries that weren't used for the given time.
+     */
+    static void prune(File directory, Duration maxUnusedTime) {
+        File[] shards = directory.listFiles(it -> it.isDirectory() && it.getName().length() == 2);
+        if (shards == null) {
+            return;
+        }
+        long oldest = System.currentTimeMillis() - maxUnusedTime.toMillis();
+        for (File shard : shards) {
+            File[] entries = shard.listFiles(it -> it.lastModified() < oldest);
+            if (entries != null) {
+                for (File entry : entries) {
+                    FileUtils.deleteQuietly(entry);
+                }
+            }
+        }
+    }
+
+    private File entryDirectory(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    private static Map<String, Path> listFiles(Path root) throws IOException {
+        Map<String, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(root)) {
+            return files;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.put(relativePath(root, file), file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String hash(List<String> lines) {
+        MessageDigest digest = FileHashes.newDigest();
+        for (String line : lines) {
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * The content hash of every file and directory of a sandbox, to find what a command changed. Timestamps can't tell a file rewritten
+     * with the same size within the same millisecond. Build output directories are only fingerprinted by the path, size and modification
+     * time of their files, as hashing them would cost as much as running most builds.
+     */
+    static class Snapshot {
+        private final Map<String, FileState> states;
+        private final Map<String, String> buildOutputs;
+
+        private Snapshot(Map<String, FileState> states, Map<String, String> buildOutputs) {
+            this.states = states;
+            this.buildOutputs = buildOutputs;
+        }
+
+        static Snapshot of(File sandbox) {
+            Path root = sandbox.toPath();
+            Map<String, FileState> states = new TreeMap<>();
+            Map<String, String> buildOutputs = new TreeMap<>();
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        if (dir.equals(root)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        String path = relativePath(root, dir);
+                        if (isBuildOutput(path)) {
+                            buildOutputs.put(path, fingerprint(dir));
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        states.put(path, FileState.DIRECTORY);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        if (attrs.isRegularFile()) {
+                            states.put(relativePath(root, file), new FileState(false, attrs.size(), FileHashes.hash(file)));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Snapshot(states, buildOutputs);
+        }
+
+        // A build or .gradle directory of a project, not a source package of that name
+        private static boolean isBuildOutput(String path) {
+            List<String> segments = Arrays.asList(path.split("/"));
+            return BUILD_OUTPUT_DIRECTORY_NAMES.contains(segments.get(segments.size() - 1)) && !segments.contains("src");
+        }
+
+        private static String fingerprint(Path directory) throws IOException {
+            List<String> lines = new ArrayList<>();
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    lines.add(relativePath(directory, file) + " " + attrs.size() + " " + attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            // The walk order depends on the file system
+            lines.sort(Comparator.naturalOrder());
+            return hash(lines);
+        }
+    }
+
+    private static class FileState {
+        private static final FileState DIRECTORY = new FileState(true, 0, "");
+
+        private final boolean directory;
+        private final long size;
+        private final String hash;
+
+        FileState(boolean directory, long size, String hash) {
+            this.directory = directory;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileState that = (FileState) o;
+            return directory == that.directory && size == that.size && hash.equals(that.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + hash.hashCode();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * How long each content test case took the last time it ran, used to spread test cases evenly over worker processes.
+ *
+ * The file is shared by every project of the build. Only the durations recorded or merged since loading are saved, merged into the
+ * current content of the file under a file lock, so projects testing in parallel don't overwrite each other's durations.
+ */
+class ContentTestDurations {
+    private static final String HEADER = "# content-test-durations v1";
+    private static final ConcurrentMap<String, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> durations = new TreeMap<>();
+    private final Map<String, Long> updates = new TreeMap<>();
+
+    static ContentTestDurations load(File file) {
+        ContentTestDurations result = new ContentTestDurations();
+        synchronized (jvmLock(file)) {
+            result.durations.putAll(read(file));
+        }
+        return result;
+    }
+
+    private static Map<String, Long> read(File file) {
+        Map<String, Long> result = new TreeMap<>();
+        if (!file.exists()) {
+            return result;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                // Unknown format, start from scratch
+                return result;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 2) {
+                    continue;
+                }
+                try {
+                    result.put(fields[0], Long.parseLong(fields[1]));
+                } catch (NumberFormatException e) {
+                    // Skip corrupted entry
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read content test durations from " + file, e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the key of the test case in the durations, stable across builds of the same checkout.
+     */
+    static String keyOf(AsciidoctorContentTestCase testCase) {
+        String key = testCase.getContentFile().get().getAsFile().getAbsolutePath();
+        if (testCase.getStartingSample().isPresent()) {
+            key += " " + testCase.getStartingSample().get().getAsFile().getAbsolutePath();
+        }
+        return key;
+    }
+
+    synchronized void record(AsciidoctorContentTestCase testCase, long durationMillis) {
+        durations.put(keyOf(testCase), durationMillis);
+        updates.put(keyOf(testCase), durationMillis);
+    }
+
+    /**
+     * Adds the durations recorded by another instance, typically loaded from the file of a work item.
+     */
+    synchronized void merge(ContentTestDurations other) {
+        durations.putAll(other.durations);
+        updates.putAll(other.durations);
+    }
+
+    /**
+     * Splits the test cases in the given number of shards of about the same total duration, by assigning the longest test case left
+     * to the shard with the shortest total duration so far. Test cases without a recorded duration are assumed to take the average duration.
+     *
+     * @return the non empty shards, longest first.
+     */
+    synchronized List<List<AsciidoctorContentTestCase>> shard(List<AsciidoctorContentTestCase> testCases, int shardCount) {
+        long averageDuration = Math.max(1, Math.round(durations.values().stream().mapToLong(Long::longValue).average().orElse(1)));
+        List<AsciidoctorContentTestCase> longestFirst = new ArrayList<>(testCases);
+        // Sorting is stable, test cases of the same duration keep their order
+        longestFirst.sort(Comparator.comparingLong((AsciidoctorContentTestCase it) -> durations.getOrDefault(keyOf(it), averageDuration)).reversed());
+
+        PriorityQueue<Shard> shortestFirst = new PriorityQueue<>(Comparator.comparingLong((Shard it) -> it.totalDuration).thenComparingInt(it -> it.index));
+        for (int i = 0; i < Math.min(shardCount, testCases.size()); i++) {
+            shortestFirst.add(new Shard(i));
+        }
+        for (AsciidoctorContentTestCase testCase : longestFirst) {
+            Shard shard = shortestFirst.poll();
+            shard.testCases.add(testCase);
+            shard.totalDuration += durations.getOrDefault(keyOf(testCase), averageDuration);
+            shortestFirst.add(shard);
+        }
+
+        List<Shard> shards = new ArrayList<>(shortestFirst);
+        shards.sort(Comparator.comparingLong((Shard it) -> it.totalDuration).reversed().thenComparingInt(it -> it.index));
+        List<List<AsciidoctorContentTestCase>> result = new ArrayList<>();
+        shards.forEach(it -> result.add(it.testCases));
+        return result;
+    }
+
+    /**
+     * Merges the durations recorded since loading into the file.
+     */
+    synchronized void save(File file) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Path path = file.toPath();
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+        File lockFile = new File(file.getParentFile(), file.getName() + ".lock");
+        synchronized (jvmLock(file)) {
+            try {
+                Files.createDirectories(path.getParent());
+                try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = channel.lock()) {
+                    Map<String, Long> merged = read(file);
+                    merged.putAll(updates);
+                    try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                        writer.write(HEADER);
+                        writer.newLine();
+                        for (Map.Entry<String, Long> entry : merged.entrySet()) {
+                            writer.write(entry.getKey() + "\t" + entry.getValue());
+                            writer.newLine();
+                        }
+                    }
+                    try {
+                        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    durations.putAll(merged);
+                    updates.clear();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to save content test durations to " + file, e);
+            }
+        }
+    }
+
+    private static Object jvmLock(File file) {
+        return JVM_LOCKS.computeIfAbsent(file.getAbsolutePath(), key -> new Object());
+    }
+
+    private static class Shard {
+        private final int index;
+        private final List<AsciidoctorContentTestCase> testCases = new ArrayList<>();
+        private long totalDuration;
+
+        Shard(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many content test cases passed and failed with each Gradle version, and how long they took, summarized once all work items completed.
+ */
+class ContentTestResults {
+    private static final String HEADER = "# content-test-results v1";
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    static ContentTestResults load(File file) {
+        ContentTestResults result = new ContentTestResults();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                return result;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 5) {
+                    continue;
+                }
+                try {
+                    result.lane(fields[0]).add(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                } catch (NumberFormatException e) {
+                    // Skip corrupted entry
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read content test results from " + file, e);
+        }
+        return result;
+    }
+
+    synchronized void record(String gradleVersion, boolean passed, long durationMillis) {
+        lane(gradleVersion).add(passed ? 1 : 0, passed ? 0 : 1, durationMillis, 0);
+    }
+
+    /**
+     * Records how long a work item took from start to end, the longest one tells when the test cases of the Gradle version were done.
+     */
+    synchronized void recordWorkItem(String gradleVersion, long durationMillis) {
+        lane(gradleVersion).add(0, 0, 0, durationMillis);
+    }
+
+    synchronized void merge(ContentTestResults other) {
+        other.lanes.forEach((gradleVersion, lane) -> lane(gradleVersion).add(lane.passed, lane.failed, lane.totalDuration, lane.longestWorkItem));
+    }
+
+    synchronized void save(File file) {
+        try {
+            Files.createDirectories(file.toPath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+                    Lane lane = entry.getValue();
+                    writer.write(entry.getKey() + "\t" + lane.passed + "\t" + lane.failed + "\t" + lane.totalDuration + "\t" + lane.longestWorkItem);
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save content test results to " + file, e);
+        }
+    }
+
+    /**
+     * @return a table of the results of the given Gradle versions, in that order.
+     */
+    synchronized String summary(List<String> gradleVersions) {
+        StringBuilder summary = new StringBuilder(String.format("%-16s %-6s %8s %8s %12s %12s%n", "Gradle version", "Result", "Passed", "Failed", "Test time", "Slowest item"));
+        for (String gradleVersion : gradleVersions) {
+            Lane lane = lanes.getOrDefault(gradleVersion, new Lane());
+            String result = lane.failed > 0 ? "FAILED" : lane.passed > 0 ? "PASSED" : "NO RUN";
+            summary.append(String.format("%-16s %-6s %8d %8d %11.1fs %11.1fs%n", gradleVersion, result, lane.passed, lane.failed, lane.totalDuration / 1000.0, lane.longestWorkItem / 1000.0));
+        }
+        return summary.toString();
+    }
+
+    private Lane lane(String gradleVersion) {
+        return lanes.computeIfAbsent(gradleVersion, it -> new Lane());
+    }
+
+    private static class Lane {
+        private int passed;
+        private int failed;
+        private long totalDuration;
+        private long longestWorkItem;
+
+        void add(int passed, int failed, long totalDuration, long longestWorkItem) {
+            this.passed += passed;
+            this.failed += failed;
+            this.totalDuration += totalDuration;
+            this.longestWorkItem = Math.max(this.longestWorkItem, longestWorkItem);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands out the sandbox directories test cases run their commands in.
+ *
+ * A released sandbox is emptied in the background and handed out again to a later test case, so the same few directories are used
+ * over and over instead of leaving a new one behind for each test case. The disk held by released sandboxes waiting to be emptied
+ * is bounded, allocating a sandbox waits for the cleanup to catch up when it's exceeded. Sandboxes left over by a previous run are
+ * emptied the same way.
+ *
+ * There is a single workspace per worker class loader and workspace directory, shared by all the work items the worker runs, as each
+ * work item usually only has a single test case. A worker claims a {@code worker-N} directory of its own under the workspace directory
+ * by locking it, so the workers of other processes don't empty its sandboxes while they're in use.
+ */
+class ContentTestWorkspace {
+    private static final Logger LOGGER = Logging.getLogger(ContentTestWorkspace.class);
+    private static final String SANDBOX_PREFIX = "sandbox-";
+    private static final String WORKER_PREFIX = "worker-";
+    private static final Map<File, ContentTestWorkspace> WORKSPACES = new HashMap<>();
+
+    private final File rootDirectory;
+    // Held as long as the worker lives, released by the OS when its process exits
+    private final FileLock lock;
+    private final long maxPendingCleanupBytes;
+    private final Deque<File> freeSandboxes = new ArrayDeque<>();
+    private final ExecutorService cleaner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "content-test-workspace-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int sandboxCount;
+    private int nextSandboxIndex;
+    private long pendingCleanupBytes;
+    private long peakPendingCleanupBytes;
+    private long largestSandboxBytes;
+
+    private ContentTestWorkspace(File rootDirectory, FileLock lock, long maxPendingCleanupBytes) {
+        this.rootDirectory = rootDirectory;
+        this.lock = lock;
+        this.maxPendingCleanupBytes = maxPendingCleanupBytes;
+        File[] leftovers = rootDirectory.listFiles((dir, name) -> name.startsWith(SANDBOX_PREFIX));
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                sandboxCount++;
+                clean(leftover, sizeOf(leftover));
+            }
+        }
+    }
+
+    /**
+     * @return the workspace of this worker under the given directory.
+     */
+    static synchronized ContentTestWorkspace shared(File workspaceDirectory, long maxPendingCleanupBytes) {
+        return WORKSPACES.computeIfAbsent(workspaceDirectory.getAbsoluteFile(), it -> claim(it, maxPendingCleanupBytes));
+    }
+
+    private static ContentTestWorkspace claim(File workspaceDirectory, long maxPendingCleanupBytes) {
+        for (int i = 0; ; i++) {
+            File rootDirectory = new File(workspaceDirectory, WORKER_PREFIX + i);
+            rootDirectory.mkdirs();
+            FileLock lock = tryLock(new File(rootDirectory, "worker.lock"));
+            if (lock != null) {
+                return new ContentTestWorkspace(rootDirectory, lock, maxPendingCleanupBytes);
+            }
+        }
+    }
+
+    private static FileLock tryLock(File lockFile) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+            }
+            return lock;
+        } catch (OverlappingFileLockException e) {
+            // Claimed by another class loader of this process
+            closeQuietly(channel);
+            return null;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Unable to lock " + lockFile, e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing more to release
+            }
+        }
+    }
+
+    /**
+     * @return an empty sandbox, only used by the caller until released.
+     */
+    synchronized Sandbox allocate() {
+        try {
+            while (pendingCleanupBytes > maxPendingCleanupBytes) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        File directory = freeSandboxes.poll();
+        if (directory == null) {
+            // Skip the names of leftovers still being cleaned
+            do {
+                directory = new File(rootDirectory, SANDBOX_PREFIX + nextSandboxIndex++);
+            } while (directory.exists());
+            sandboxCount++;
+        }
+        directory.mkdirs();
+        return new Sandbox(directory);
+    }
+
+    private synchronized void clean(File directory, long size) {
+        pendingCleanupBytes += size;
+        peakPendingCleanupBytes = Math.max(peakPendingCleanupBytes, pendingCleanupBytes);
+        cleaner.execute(() -> {
+            boolean reusable;
+            try {
+                FileUtils.cleanDirectory(directory);
+                reusable = true;
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Unable to clean content test sandbox " + directory + ", it won't be reused: " + e.getMessage());
+                reusable = false;
+            }
+            synchronized (this) {
+                pendingCleanupBytes -= size;
+                if (reusable) {
+                    freeSandboxes.push(directory);
+                }
+                notifyAll();
+            }
+        });
+    }
+
+    private static long sizeOf(File directory) {
+        try {
+            return FileUtils.sizeOfDirectory(directory);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            // The directory went away, nothing to account for
+            return 0;
+        }
+    }
+
+    /**
+     * Reports the sandboxes used so far, with the size of the largest one when it was released and the most disk waiting to be emptied at once.
+     */
+    synchronized void logUsage() {
+        LOGGER.info("Content test workspace " + rootDirectory + " used " + sandboxCount + " sandboxes, largest sandbox " + FileUtils.byteCountToDisplaySize(largestSandboxBytes)
+                + ", peak size waiting for cleanup " + FileUtils.byteCountToDisplaySize(peakPendingCleanupBytes) + ".");
+    }
+
+    /**
+     * A sandbox in use, emptied in the background once released.
+     */
+    class Sandbox implements AutoCloseable {
+        private final File directory;
+
+        private Sandbox(File directory) {
+            this.directory = directory;
+        }
+
+        File getDirectory() {
+            return directory;
+        }
+
+        @Override
+        public void close() {
+            long size = sizeOf(directory);
+            synchronized (ContentTestWorkspace.this) {
+                largestSandboxBytes = Math.max(largestSandboxBytes, size);
+            }
+            clean(directory, size);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SHA-256 content hashes of files, used to seed samples and to key and record commands in the command result cache.
+ *
+ * Installed samples don't change between test cases, the hash of their files is computed once per worker class loader and only again when
+ * the size or modification time of a file changed.
+ */
+class FileHashes {
+    private static final Map<Path, FileHash> INSTALLED_FILES = new ConcurrentHashMap<>();
+
+    private FileHashes() {
+    }
+
+    static FileHash installedFile(Path file) throws IOException {
+        return installedFile(file, Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    static FileHash installedFile(Path file, BasicFileAttributes attrs) throws IOException {
+        FileHash fileHash = INSTALLED_FILES.get(file);
+        if (fileHash == null || !fileHash.isUpToDate(attrs)) {
+            fileHash = new FileHash(attrs.size(), attrs.lastModifiedTime().toMillis(), hash(file));
+            INSTALLED_FILES.put(file, fileHash);
+        }
+        return fileHash;
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inStream = Files.newInputStream(file)) {
+            int count;
+            while ((count = inStream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The hash of a file along with the size and modification time it had when hashed.
+     */
+    static class FileHash {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        private FileHash(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return whether the file still has the size and modification time it was hashed with.
+         */
+        boolean isUpToDate(BasicFileAttributes attrs) {
+            return size == attrs.size() && lastModified == attrs.lastModifiedTime().toMillis();
+        }
+    }
+}
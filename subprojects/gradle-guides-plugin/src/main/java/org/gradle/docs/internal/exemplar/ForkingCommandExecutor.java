@@ -0,0 +1,51 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+import org.gradle.samples.test.normalizer.AsciidoctorAnnotationOutputNormalizer;
+import org.gradle.samples.test.normalizer.OutputNormalizer;
+import org.gradle.samples.test.normalizer.TrailingNewLineOutputNormalizer;
+import org.junit.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.gradle.docs.internal.exemplar.OutputNormalizers.composite;
+
+/**
+ * Executes any command as a new process, the fallback for commands no other executor can execute.
+ */
+class ForkingCommandExecutor implements CommandExecutor {
+    @Override
+    public boolean canExecute(Command command) {
+        return true;
+    }
+
+    @Override
+    public void execute(Command command, CommandContext context) throws IOException {
+        File workingDir = context.getWorkingDirectory(command);
+        String output = context.runCached(() -> {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            context.getExecOperations().exec(spec -> {
+                spec.executable(command.getExecutable());
+                spec.args(command.getArgs());
+                spec.setWorkingDir(workingDir);
+                spec.environment("HOME", context.getSandboxDirectory().getAbsolutePath());
+                spec.setStandardOutput(outStream);
+                spec.setErrorOutput(outStream);
+            });
+            return outStream.toString();
+        });
+        verifyOutput(command, output);
+    }
+
+    static void verifyOutput(Command command, String output) {
+        if (!command.getExpectedOutput().isEmpty()) {
+            String expectedOutput = command.getExpectedOutput();
+            OutputNormalizer normalizer = composite(new AsciidoctorAnnotationOutputNormalizer(), new TrailingNewLineOutputNormalizer());
+            expectedOutput = normalizer.normalize(expectedOutput, null);
+            output = normalizer.normalize(output, null);
+            Assert.assertEquals("Output no equals", expectedOutput, output);
+        }
+    }
+}
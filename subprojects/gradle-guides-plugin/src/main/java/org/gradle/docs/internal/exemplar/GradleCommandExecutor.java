@@ -0,0 +1,175 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.executor.ExecutionMetadata;
+import org.gradle.samples.model.Command;
+import org.gradle.samples.test.normalizer.GradleOutputNormalizer;
+import org.gradle.samples.test.normalizer.OutputNormalizer;
+import org.gradle.samples.test.normalizer.WorkingDirectoryOutputNormalizer;
+import org.gradle.samples.test.verifier.AnyOrderLineSegmentedOutputVerifier;
+import org.gradle.samples.test.verifier.OutputVerifier;
+import org.gradle.tooling.model.build.BuildEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.gradle.docs.internal.exemplar.OutputNormalizers.composite;
+
+/**
+ * Executes Gradle commands. Wrapper commands run as a new process, with the wrapper of the sample pointed to the Gradle version under test.
+ * Other commands run the Gradle installation found as a new process when testing the default version. For the other versions of the matrix,
+ * they run through the Tooling API with the version under test, except for the options only the command line client handles or prints
+ * differently, which run the distribution of the version installed by the Tooling API as a new process.
+ */
+class GradleCommandExecutor implements CommandExecutor {
+    private static final Pattern DISTRIBUTION_URL = Pattern.compile("^(distributionUrl=.*/gradle-)(.+)(-(?:bin|all)\\.zip)$", Pattern.MULTILINE);
+    private static final Set<String> COMMAND_LINE_ONLY_OPTIONS = new HashSet<>(Arrays.asList("--version", "-v", "--help", "-h", "-?", "--quiet", "-q"));
+
+    @Override
+    public boolean canExecute(Command command) {
+        return runsGradle(command);
+    }
+
+    static boolean runsGradle(Command command) {
+        return command.getExecutable().contains("gradle");
+    }
+
+    @Override
+    public void execute(Command command, CommandContext context) throws IOException {
+        prepare(command, context);
+        File workingDir = context.getWorkingDirectory(command);
+        File homeDirectory = context.getSandboxDirectory();
+        String output = context.runCached(() -> {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            if (isWrapper(command) || context.getGradleVersion().equals(AsciidoctorContentTest.DEFAULT_GRADLE_VERSION)) {
+                fork(command.getExecutable(), command, context, workingDir, outStream);
+            } else if (command.getArgs().stream().anyMatch(COMMAND_LINE_ONLY_OPTIONS::contains)) {
+                fork(installedDistributionExecutable(context, workingDir), command, context, workingDir, outStream);
+            } else {
+                runWithToolingApi(command, context, workingDir, outStream);
+            }
+            return outStream.toString();
+        });
+        String expectedOutput = command.getExpectedOutput();
+        OutputNormalizer normalizer = composite(new GradleOutputNormalizer(), new WorkingDirectoryOutputNormalizer());
+        ExecutionMetadata executionMetadata = new ExecutionMetadata(homeDirectory, Collections.emptyMap());
+        expectedOutput = normalizer.normalize(expectedOutput, executionMetadata);
+        output = normalizer.normalize(output, executionMetadata);
+
+        OutputVerifier verifier = new AnyOrderLineSegmentedOutputVerifier();
+        verifier.verify(expectedOutput, output, false);
+    }
+
+    private static void fork(String executable, Command command, CommandContext context, File workingDir, ByteArrayOutputStream outStream) {
+        context.getExecOperations().exec(spec -> {
+            spec.executable(executable);
+            spec.args(command.getArgs());
+            spec.environment("GRADLE_USER_HOME", context.getGradleUserHomeDirectory().getAbsolutePath());
+            spec.environment("HOME", context.getSandboxDirectory().getAbsolutePath());
+            spec.setWorkingDir(workingDir);
+            spec.setStandardOutput(outStream);
+        });
+    }
+
+    /**
+     * @return the launcher script of the distribution of the version under test, installed in the Gradle user home by the Tooling API.
+     */
+    private static String installedDistributionExecutable(CommandContext context, File workingDir) {
+        File executable = findInstalledDistributionExecutable(context.getGradleUserHomeDirectory(), context.getGradleVersion());
+        if (executable == null) {
+            // Fetching a model is the cheapest way to have the Tooling API download and install the distribution
+            try (ToolingApiConnectionPool.Lease lease = context.getConnectionPool().acquire(workingDir, context.getGradleUserHomeDirectory(), context.getGradleVersion())) {
+                lease.getModel(BuildEnvironment.class);
+            }
+            executable = findInstalledDistributionExecutable(context.getGradleUserHomeDirectory(), context.getGradleVersion());
+        }
+        if (executable == null) {
+            throw new IllegalStateException("Unable to find the Gradle " + context.getGradleVersion() + " distribution in " + context.getGradleUserHomeDirectory());
+        }
+        return executable.getAbsolutePath();
+    }
+
+    private static File findInstalledDistributionExecutable(File gradleUserHomeDirectory, String gradleVersion) {
+        String script = System.getProperty("os.name").toLowerCase().contains("windows") ? "gradle.bat" : "gradle";
+        for (String type : Arrays.asList("bin", "all")) {
+            // Each distribution URL has its own directory, named after its hash
+            File[] installations = new File(gradleUserHomeDirectory, "wrapper/dists/gradle-" + gradleVersion + "-" + type).listFiles(File::isDirectory);
+            if (installations != null) {
+                for (File installation : installations) {
+                    File executable = new File(installation, "gradle-" + gradleVersion + "/bin/" + script);
+                    if (executable.isFile()) {
+                        return executable;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void runWithToolingApi(Command command, CommandContext context, File workingDir, ByteArrayOutputStream outStream) {
+        Map<String, String> environment = new HashMap<>(System.getenv());
+        environment.put("HOME", context.getSandboxDirectory().getAbsolutePath());
+        ToolingApiConnectionPool.Lease lease = context.getConnectionPool().acquire(workingDir, context.getGradleUserHomeDirectory(), context.getGradleVersion());
+        try {
+            // Task names are arguments like any other, as on the command line
+            lease.newBuild()
+                    .withArguments(command.getArgs())
+                    .setEnvironmentVariables(environment)
+                    .setStandardOutput(outStream)
+                    .run();
+        } catch (RuntimeException e) {
+            lease.invalidate();
+            throw e;
+        } finally {
+            lease.close();
+        }
+    }
+
+    private static boolean isWrapper(Command command) {
+        return command.getExecutable().contains("gradlew");
+    }
+
+    /**
+     * Gets the sandbox and the Gradle user home ready for a Gradle command, however it's executed.
+     */
+    static void prepare(Command command, CommandContext context) throws IOException {
+        disableWelcomeMessage(context.getGradleUserHomeDirectory(), context.getGradleVersion());
+        if (isWrapper(command)) {
+            useGradleVersion(new File(context.getWorkingDirectory(command), "gradle/wrapper/gradle-wrapper.properties"), context.getGradleVersion());
+        }
+    }
+
+    // Points the wrapper of the sample to the Gradle version under test, the properties file is never linked to the installed sample
+    private static void useGradleVersion(File wrapperProperties, String gradleVersion) throws IOException {
+        if (!wrapperProperties.isFile()) {
+            return;
+        }
+        String content = new String(Files.readAllBytes(wrapperProperties.toPath()), StandardCharsets.ISO_8859_1);
+        Matcher matcher = DISTRIBUTION_URL.matcher(content);
+        if (matcher.find() && !matcher.group(2).equals(gradleVersion)) {
+            String updated = content.substring(0, matcher.start(2)) + gradleVersion + content.substring(matcher.end(2));
+            Files.write(wrapperProperties.toPath(), updated.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void disableWelcomeMessage(File gradleUserHomeDirectory, String gradleVersion) {
+        File welcomeMessageRenderedFile = new File(gradleUserHomeDirectory, "notifications/" + gradleVersion + "/release-features.rendered");
+        welcomeMessageRenderedFile.getParentFile().mkdirs();
+        try {
+            welcomeMessageRenderedFile.createNewFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Drains an output stream from a dedicated thread blocking on it, so waiting for output doesn't use any CPU.
+ *
+ * The output received so far is handed out once the stream has been quiet for a given period, or as soon as it is known to be complete,
+ * which is how the interactive commands tell that Gradle is waiting for user input. Waiting fails when no output at all is received
+ * for too long, so a build that went silent doesn't hang the test forever.
+ *
+ * At most {@code maxRetainedBytes} of the output received between two calls are kept, half from its head and half from its tail, with a
+ * marker telling how much was dropped in between. A long-running command that never goes quiet doesn't grow the memory of the worker,
+ * and its truncated output simply doesn't match the expected output.
+ */
+class OutputPump implements AutoCloseable {
+    static final int DEFAULT_MAX_RETAINED_BYTES = 1024 * 1024;
+
+    private final Object lock = new Object();
+    private final RetainedOutput pending;
+    private final Thread thread;
+    private long lastChunkAt;
+    private boolean ended;
+    private boolean closed;
+    private IOException failure;
+
+    private OutputPump(InputStream stream, int maxRetainedBytes) {
+        pending = new RetainedOutput(maxRetainedBytes);
+        thread = new Thread(() -> pump(stream), "exemplar-output-pump");
+        thread.setDaemon(true);
+    }
+
+    static OutputPump start(InputStream stream) {
+        return start(stream, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    static OutputPump start(InputStream stream, int maxRetainedBytes) {
+        OutputPump pump = new OutputPump(stream, maxRetainedBytes);
+        pump.thread.start();
+        return pump;
+    }
+
+    private void pump(InputStream stream) {
+        byte[] buffer = new byte[8192];
+        try {
+            int count;
+            while ((count = stream.read(buffer)) >= 0) {
+                synchronized (lock) {
+                    pending.write(buffer, 0, count);
+                    lastChunkAt = System.nanoTime();
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                if (!closed) {
+                    failure = e;
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                ended = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for some output followed by the quiet period without any further output.
+     *
+     * @return the output received since the previous call, or {@code null} if the stream ended without any further output.
+     * @throws IllegalStateException if no output was received within the timeout.
+     */
+    String awaitQuietOutput(Duration quietPeriod, Duration timeout) throws InterruptedException {
+        return awaitQuietOutput(quietPeriod, timeout, output -> false);
+    }
+
+    /**
+     * Waits for some output followed by the quiet period without any further output, or for the output received so far to be complete.
+     *
+     * @return the output received since the previous call, or {@code null} if the stream ended without any further output.
+     * @throws IllegalStateException if no output was received within the timeout.
+     */
+    String awaitQuietOutput(Duration quietPeriod, Duration timeout, Predicate<String> isComplete) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (lock) {
+            while (true) {
+                if (!pending.isEmpty()) {
+                    long remaining = lastChunkAt + quietPeriod.toNanos() - System.nanoTime();
+                    if (remaining <= 0 || ended || isComplete.test(pending.toString())) {
+                        String output = pending.toString();
+                        pending.reset();
+                        return output;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } else if (ended) {
+                    if (failure != null) {
+                        throw new UncheckedIOException(failure);
+                    }
+                    return null;
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new IllegalStateException("No output received in reasonable time, waited " + timeout.toMillis() + " ms.");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * The head of the output is kept as it comes, then the latest bytes overwrite each other in a fixed size tail.
+     */
+    private static class RetainedOutput {
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private final int headLimit;
+        private final byte[] tail;
+        private int tailStart;
+        private int tailSize;
+        private long dropped;
+
+        RetainedOutput(int maxRetainedBytes) {
+            if (maxRetainedBytes < 2) {
+                throw new IllegalArgumentException("At least 2 bytes of output must be retained.");
+            }
+            this.headLimit = maxRetainedBytes / 2;
+            this.tail = new byte[maxRetainedBytes - headLimit];
+        }
+
+        void write(byte[] buffer, int offset, int count) {
+            int toHead = Math.min(count, headLimit - head.size());
+            head.write(buffer, offset, toHead);
+            for (int i = offset + toHead; i < offset + count; i++) {
+                if (tailSize < tail.length) {
+                    tail[(tailStart + tailSize++) % tail.length] = buffer[i];
+                } else {
+                    tail[tailStart] = buffer[i];
+                    tailStart = (tailStart + 1) % tail.length;
+                    dropped++;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return head.size() == 0;
+        }
+
+        @Override
+        public String toString() {
+            byte[] tailBytes = new byte[tailSize];
+            for (int i = 0; i < tailSize; i++) {
+                tailBytes[i] = tail[(tailStart + i) % tail.length];
+            }
+            String marker = dropped == 0 ? "" : "\n[... " + dropped + " bytes of output truncated ...]\n";
+            return head.toString() + marker + new String(tailBytes);
+        }
+
+        void reset() {
+            head.reset();
+            tailStart = 0;
+            tailSize = 0;
+            dropped = 0;
+        }
+    }
+}
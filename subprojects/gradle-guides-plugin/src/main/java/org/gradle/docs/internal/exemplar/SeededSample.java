@@ -0,0 +1,140 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.samples.model.Command;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A copy of an installed sample where the files unlikely to ever be written, like jars and images, are hard links to the installed
+ * files instead of copies. Seeding a sample then costs little I/O and disk no matter the size of those files.
+ *
+ * The links are only broken for the commands that may write to them, see {@link #prepareFor(Command)}. Gradle builds only write to
+ * their build and {@code .gradle} directories, which aren't seeded, so test cases only running builds and builtin commands keep their
+ * links to the end. Other commands {@link #materialize()} the sample first so they write to private copies, once per sandbox.
+ * A write through a hard link that slipped through anyway is caught by {@link #verifyUnchanged()}, which compares the content hash of
+ * the installed files with the one recorded when they were first seeded.
+ */
+class SeededSample {
+    private static final Set<String> IMMUTABLE_EXTENSIONS = new HashSet<>(Arrays.asList("jar", "zip", "war", "ear", "class", "png", "jpg", "jpeg", "gif", "ico", "pdf", "tar", "gz", "tgz"));
+    private static final long IMMUTABLE_SIZE = 1024 * 1024;
+    // Tasks of the Gradle distribution writing to the files of the project itself, e.g. the wrapper jar
+    private static final Set<String> SAMPLE_WRITING_TASKS = new HashSet<>(Arrays.asList("wrapper", "init"));
+
+    private final List<Link> links;
+
+    private SeededSample(List<Link> links) {
+        this.links = links;
+    }
+
+    static SeededSample empty() {
+        return new SeededSample(new ArrayList<>());
+    }
+
+    /**
+     * Seeds the destination with the content of the installed sample, falling back to copies when hard links aren't supported.
+     */
+    static SeededSample seed(File installedSample, File destination) throws IOException {
+        Path sourceRoot = installedSample.toPath();
+        Path destinationRoot = destination.toPath();
+        List<Link> links = new ArrayList<>();
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            private boolean linksSupported = true;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(destinationRoot.resolve(sourceRoot.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = destinationRoot.resolve(sourceRoot.relativize(file).toString());
+                if (linksSupported && isImmutable(file, attrs)) {
+                    try {
+                        Files.createLink(target, file);
+                        links.add(new Link(target, file, FileHashes.installedFile(file, attrs)));
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        // e.g. the workspace is on another file system
+                        linksSupported = false;
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new SeededSample(links);
+    }
+
+    /**
+     * Materializes the sample before executing a command that may write to the files linked to the installed sample.
+     */
+    void prepareFor(Command command) throws IOException {
+        if (links.isEmpty()) {
+            return;
+        }
+        boolean writesSample = !GradleCommandExecutor.runsGradle(command)
+                || command.getArgs().stream().map(it -> it.substring(it.lastIndexOf(':') + 1)).anyMatch(SAMPLE_WRITING_TASKS::contains);
+        if (writesSample) {
+            materialize();
+        }
+    }
+
+    /**
+     * Replaces every hard link with a private copy, so the sample can be written to freely.
+     */
+    private void materialize() throws IOException {
+        for (Link link : links) {
+            if (Files.exists(link.path) && Files.isSameFile(link.path, link.installedPath)) {
+                Path copy = link.path.resolveSibling(link.path.getFileName() + ".materializing");
+                Files.copy(link.installedPath, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.move(copy, link.path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        links.clear();
+    }
+
+    /**
+     * @throws IllegalStateException when an installed file was written through its hard link.
+     */
+    void verifyUnchanged() throws IOException {
+        for (Link link : links) {
+            BasicFileAttributes attrs = Files.readAttributes(link.installedPath, BasicFileAttributes.class);
+            FileHashes.FileHash installedFile = link.installedFile;
+            if (!installedFile.isUpToDate(attrs) && !FileHashes.hash(link.installedPath).equals(installedFile.getHash())) {
+                throw new IllegalStateException("The installed sample file " + link.installedPath + " was modified through its hard link " + link.path
+                        + ". Reinstall the sample and materialize the seeded sample before running the command writing to it.");
+            }
+        }
+    }
+
+    private static boolean isImmutable(Path file, BasicFileAttributes attrs) {
+        String name = file.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        return IMMUTABLE_EXTENSIONS.contains(extension) || attrs.size() >= IMMUTABLE_SIZE;
+    }
+
+    private static class Link {
+        private final Path path;
+        private final Path installedPath;
+        private final FileHashes.FileHash installedFile;
+
+        Link(Path path, Path installedPath, FileHashes.FileHash installedFile) {
+            this.path = path;
+            this.installedPath = installedPath;
+            this.installedFile = installedFile;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.samples.model.Command;
+import org.gradle.samples.test.normalizer.GradleOutputNormalizer;
+import org.gradle.samples.test.normalizer.OutputNormalizer;
+import org.gradle.samples.test.normalizer.StripTrailingOutputNormalizer;
+import org.gradle.samples.test.verifier.OutputVerifier;
+import org.gradle.samples.test.verifier.StrictOrderLineSegmentedOutputVerifier;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnectionException;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ResultHandler;
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.gradle.docs.internal.exemplar.OutputNormalizers.composite;
+import static org.gradle.docs.internal.exemplar.OutputNormalizers.toFunctional;
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.core.StringStartsWith.startsWith;
+
+/**
+ * Executes the interactive Gradle commands, {@code gradle init} and builds publishing a build scan, through the Tooling API.
+ * The expected output tells what the user typed after each prompt, which is fed back to the build.
+ */
+class ToolingApiCommandExecutor implements CommandExecutor {
+    private static final Logger LOGGER = Logging.getLogger(ToolingApiCommandExecutor.class);
+    // Long enough for a daemon to start and a distribution to be downloaded, which print nothing
+    private static final Duration NO_OUTPUT_TIMEOUT = Duration.ofSeconds(90);
+
+    @Override
+    public boolean canExecute(Command command) {
+        return command.getExecutable().contains("gradle") && (command.getArgs().get(0).equals("init") || command.getArgs().contains("--scan"));
+    }
+
+    @Override
+    public void execute(Command command, CommandContext context) throws IOException {
+        GradleCommandExecutor.prepare(command, context);
+        // gradle init writes the files of the sample, including the ones linked to the installed sample
+        context.getSample().prepareFor(command);
+        File workingDir = context.getWorkingDirectory(command);
+        // Reuse the connector, and the warm daemon, of the previous commands of the same Gradle user home, version and JVM arguments
+        ToolingApiConnectionPool.Lease lease = context.getConnectionPool().acquire(workingDir, context.getGradleUserHomeDirectory(), context.getGradleVersion());
+        CancellationTokenSource cancel = GradleConnector.newCancellationTokenSource();
+        OutputNormalizer normalizer = composite(new GradleOutputNormalizer(), new StripTrailingOutputNormalizer());
+        String expectedOutput = normalizer.normalize(command.getExpectedOutput(), null);
+
+        Transcript transcript = new Transcript();
+        ByteRing stdin = new ByteRing(4 * 1024);
+        TeeInputStream stdinForToolingApi = new TeeInputStream(stdin.getInputStream(), transcript);
+
+        ByteRing stdoutRing = new ByteRing();
+        // Capture first, the ring discards output once the interactive part is over
+        TeeOutputStream stdoutForToolingApi = new TeeOutputStream(transcript, stdoutRing.getOutputStream());
+
+        try {
+            // The end of the output tells the interactive part that the build is over, whatever the expected output says
+            AssertingResultHandler resultHandler = new AssertingResultHandler(stdoutRing.getOutputStream());
+            // TODO: Configure environment variables
+            // TODO: The following won't work for flags with arguments
+            lease.newBuild()
+                    .forTasks(command.getArgs().stream().filter(it -> !it.startsWith("--")).collect(Collectors.toList()).toArray(new String[0]))
+                    .addArguments(command.getArgs().stream().filter(it -> it.startsWith("--")).collect(Collectors.toList()))
+                    .setStandardInput(stdinForToolingApi)
+                    .setStandardOutput(stdoutForToolingApi).setStandardError(stdoutForToolingApi).withCancellationToken(cancel.token()).run(resultHandler);
+
+            OutputConsumer c = new OutputConsumer(expectedOutput);
+            try (InputStream stdoutReader = stdoutRing.getInputStream(); OutputPump stdout = OutputPump.start(stdoutReader)) {
+                Function<OutputPump, Void> interactiveChain = awaitPromptOrDebounceStdOut(c, normalizer, Duration.ofMillis(1500)).andThen(toFunctional(normalizer)).andThen(userInputFromExpectedOutput(c)).andThen(writeToStdIn(stdin.getOutputStream()));
+
+                while (c.hasMoreOutput()) {
+                    interactiveChain.apply(stdout);
+                }
+            } catch (Throwable e) {
+                cancel.cancel();
+                throw e;
+            }
+
+            try {
+                resultHandler.waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            resultHandler.assertCompleteSuccessfully();
+
+            String output = normalizer.normalize(transcript.toString(), null);
+            OutputVerifier verifier = new StrictOrderLineSegmentedOutputVerifier();
+            verifier.verify(expectedOutput, output, false);
+        } catch (Throwable e) {
+            // The build may still be running or be cancelled, the next command gets a new connector
+            lease.invalidate();
+            throw e;
+        } finally {
+            stdin.getOutputStream().close();
+            lease.close();
+        }
+    }
+
+    private static UnaryOperator<String> userInputFromExpectedOutput(OutputConsumer output) {
+        return incoming -> {
+            output.consumeOutput(incoming);
+
+            // Publishing takes a bit of time and it mess up with the debouncing.
+            // We know there is no user input required, so let's add a special case.
+            if (incoming.contains("Publishing build scan...")) {
+                return "";
+            }
+
+            String input = output.consumeNextInput();
+            return input;
+        };
+    }
+
+    private static Function<String, Void> writeToStdIn(OutputStream stdin) {
+        return incoming -> {
+            try {
+                stdin.write(incoming.getBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        };
+    }
+
+    private static Function<OutputPump, String> awaitPromptOrDebounceStdOut(OutputConsumer output, OutputNormalizer normalizer, Duration debounce) {
+        // NOTE: When supporting rich console, we will have to deal with the fact that Gradle is continuously updating the progress section.
+        // Recognized prompts are answered right away, waiting for the output to settle is only a fallback.
+        return stdout -> {
+            try {
+                String incoming = stdout.awaitQuietOutput(debounce, NO_OUTPUT_TIMEOUT, received -> output.isAwaitingInput(normalizer.normalize(received, null)));
+                Assert.assertNotNull("The output ended before all the expected output was received, something is wrong.", incoming);
+                return incoming;
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private static class OutputConsumer {
+        // Only the whole last line is matched against the prompts of `gradle init`, `Enter selection (default: basic) [1..4]` and
+        // `Project name (default: demo):`, and of the build scan terms of service, `... Do you accept these terms? [yes, no]`.
+        // Other output, like a line ending with a question mark, is never answered
+        private static final Pattern PROMPT = Pattern.compile("Enter selection \\(default: [^)]*\\) \\[\\d+\\.\\.\\d+]\\s*"
+                + "|[^\\s(][^(]* \\(default: [^)]*\\):\\s*"
+                + "|.*\\? \\[yes, no]\\s*");
+
+        private String output;
+
+        public OutputConsumer(String output) {
+            this.output = output;
+        }
+
+        public void consumeOutput(String outputSnippet) {
+            LOGGER.info("==== CONSUMING OUTPUT (" + outputSnippet.length() + " characters) ====\n" + outputSnippet + "\n====");
+
+            Assert.assertThat("Consuming the received output from the expected output", output, startsWith(outputSnippet));
+
+            output = output.substring(outputSnippet.length());
+        }
+
+        public String consumeNextInput() {
+            int idx = output.indexOf('\n');
+            String input = output.substring(0, idx + 1);
+
+            // We strip leading whitespace as we are stripping the tailing whitespace from the received output
+            input = stripLeading(input);
+            LOGGER.info("---- USING INPUT ----\n" + input + "\n----");
+            Assert.assertThat("Consumed user input is too large to make sense", input, isSensibleSize());
+
+            output = output.substring(idx + 1);
+
+            if (input.length() > 0) {
+                Assert.assertThat("Input isn't sending output down the pipe", input, endsWith("\n"));
+            }
+
+            return input;
+        }
+
+        /**
+         * @return whether the received output is all the remaining expected output, or ends with a prompt the expected output follows with user input.
+         */
+        public boolean isAwaitingInput(String outputSnippet) {
+            if (outputSnippet.isEmpty() || !output.startsWith(outputSnippet)) {
+                return false;
+            }
+            if (output.equals(outputSnippet)) {
+                return true;
+            }
+            String lastLine = outputSnippet.substring(outputSnippet.lastIndexOf('\n') + 1);
+            if (!PROMPT.matcher(lastLine).matches()) {
+                return false;
+            }
+            String remaining = output.substring(outputSnippet.length());
+            int idx = remaining.indexOf('\n');
+            return idx >= 0 && remaining.substring(0, idx).trim().length() <= 3;
+        }
+
+        public boolean hasMoreOutput() {
+            return !output.isEmpty();
+        }
+
+        private static Matcher<String> isSensibleSize() {
+            return new BaseMatcher<String>() {
+                @Override
+                public void describeTo(Description description) {
+                    description.appendText("String longer than 4 characters (including newline).");
+                }
+
+                @Override
+                public boolean matches(Object item) {
+                    return ((String)item).length() <= 4; // so it works with numbers input form build-init and `yes` for build-scan.
+                }
+            };
+        }
+
+        private static String stripLeading(String self) {
+            int len = self.length();
+            int st = 0;
+            char[] val = self.toCharArray();    /* avoid getfield opcode */
+
+            while ((st < len) && (Character.isSpaceChar(val[st]))) {
+                st++;
+            }
+            return ((st > 0)) ? self.substring(st, len - st + 1) : self;
+        }
+    }
+
+    private static class AssertingResultHandler implements ResultHandler<Void> {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final OutputStream output;
+        // Written before counting down the latch, so visible to any thread that saw the latch open
+        private volatile GradleConnectionException exception;
+
+        AssertingResultHandler(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void onComplete(Void result) {
+            finish();
+        }
+
+        @Override
+        public void onFailure(GradleConnectionException failure) {
+            exception = failure;
+            finish();
+        }
+
+        private void finish() {
+            try {
+                output.close();
+            } catch (IOException e) {
+                // Nothing is written anymore, the reading side sees the end of the output either way
+            }
+            finished.countDown();
+        }
+
+        /**
+         * @param timeout the maximum time to wait
+         * @param unit the time unit of the {@code timeout} argument
+         * @return {@code true} if the Gradle build has exited and {@code false} if the waiting time elapsed before the Gradle build has exited.
+         * @throws InterruptedException if the current thread is interrupted while waiting.
+         */
+        public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        public void assertCompleteSuccessfully() {
+            Assert.assertEquals("Gradle execution hasn't completed yet.", 0, finished.getCount());
+            Assert.assertNull("Gradle completed with an exception.", exception);
+        }
+    }
+}
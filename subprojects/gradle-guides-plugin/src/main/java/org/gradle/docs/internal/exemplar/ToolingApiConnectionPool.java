@@ -0,0 +1,164 @@
+package org.gradle.docs.internal.exemplar;
+
+import org.gradle.tooling.BuildLauncher;
+import org.gradle.tooling.GradleConnectionException;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ModelBuilder;
+import org.gradle.tooling.ProjectConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Shares one Tooling API connector per Gradle user home, Gradle distribution and daemon JVM arguments between the Gradle commands run by a
+ * worker. Each command points the connector at its own directory, so the distribution is resolved once and every command with the same key
+ * finds the daemon of the previous one warm, whatever its test case, sandbox or work item.
+ *
+ * There is a single pool per worker class loader, which Gradle keeps across the work items of a build, and across builds for the worker
+ * processes and class loaders it caches. The JVM arguments are the {@code org.gradle.jvmargs} of the project, so builds asking for another
+ * daemon don't share a connector with the others.
+ *
+ * A connection lasts for a single command. A connector failing to connect is dropped and connecting is attempted once more with a new one.
+ * The connector of a command that didn't complete normally is dropped as well.
+ */
+class ToolingApiConnectionPool {
+    private static final ToolingApiConnectionPool SHARED = new ToolingApiConnectionPool();
+
+    private final Map<Key, GradleConnector> connectors = new HashMap<>();
+
+    static ToolingApiConnectionPool shared() {
+        return SHARED;
+    }
+
+    Lease acquire(File projectDirectory, File gradleUserHomeDirectory, String gradleVersion) {
+        Key key = new Key(gradleUserHomeDirectory.getAbsoluteFile(), gradleVersion, jvmArgumentsOf(projectDirectory));
+        try {
+            return new Lease(key, connect(key, projectDirectory));
+        } catch (GradleConnectionException e) {
+            // The daemon or the distribution the connector was using may be gone
+            evict(key);
+            return new Lease(key, connect(key, projectDirectory));
+        }
+    }
+
+    private ProjectConnection connect(Key key, File projectDirectory) {
+        GradleConnector connector;
+        synchronized (this) {
+            connector = connectors.computeIfAbsent(key, it -> GradleConnector.newConnector()
+                    .useGradleUserHomeDir(it.gradleUserHomeDirectory)
+                    .useGradleVersion(it.gradleVersion));
+        }
+        // The connector is only used to create connections, which it supports from several threads
+        return connector.forProjectDirectory(projectDirectory).connect();
+    }
+
+    private synchronized void evict(Key key) {
+        connectors.remove(key);
+    }
+
+    private static List<String> jvmArgumentsOf(File projectDirectory) {
+        File propertiesFile = new File(projectDirectory, "gradle.properties");
+        if (!propertiesFile.isFile()) {
+            return Collections.emptyList();
+        }
+        Properties properties = new Properties();
+        try (InputStream inStream = Files.newInputStream(propertiesFile.toPath())) {
+            properties.load(inStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + propertiesFile, e);
+        }
+        String jvmArguments = properties.getProperty("org.gradle.jvmargs", "").trim();
+        return jvmArguments.isEmpty() ? Collections.emptyList() : Arrays.stream(jvmArguments.split("\\s+")).collect(Collectors.toList());
+    }
+
+    /**
+     * A connection for a single command, closed on close.
+     */
+    class Lease implements AutoCloseable {
+        private final Key key;
+        private final ProjectConnection connection;
+        private boolean valid = true;
+
+        private Lease(Key key, ProjectConnection connection) {
+            this.key = key;
+            this.connection = connection;
+        }
+
+        /**
+         * @return a build with the JVM arguments the connector was picked for.
+         */
+        BuildLauncher newBuild() {
+            BuildLauncher build = connection.newBuild();
+            if (!key.jvmArguments.isEmpty()) {
+                build.setJvmArguments(key.jvmArguments);
+            }
+            return build;
+        }
+
+        /**
+         * @return the model, fetched with the JVM arguments the connector was picked for.
+         */
+        <T> T getModel(Class<T> modelType) {
+            ModelBuilder<T> model = connection.model(modelType);
+            if (!key.jvmArguments.isEmpty()) {
+                model.setJvmArguments(key.jvmArguments);
+            }
+            return model.get();
+        }
+
+        /**
+         * Drops the connector the connection came from, e.g. because a build using it was cancelled.
+         */
+        void invalidate() {
+            valid = false;
+        }
+
+        @Override
+        public void close() {
+            if (!valid) {
+                evict(key);
+            }
+            connection.close();
+        }
+    }
+
+    private static class Key {
+        private final File gradleUserHomeDirectory;
+        private final String gradleVersion;
+        private final List<String> jvmArguments;
+
+        Key(File gradleUserHomeDirectory, String gradleVersion, List<String> jvmArguments) {
+            this.gradleUserHomeDirectory = gradleUserHomeDirectory;
+            this.gradleVersion = gradleVersion;
+            this.jvmArguments = jvmArguments;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return gradleUserHomeDirectory.equals(key.gradleUserHomeDirectory) && gradleVersion.equals(key.gradleVersion) && jvmArguments.equals(key.jvmArguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gradleUserHomeDirectory, gradleVersion, jvmArguments);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.gradle.docs.internal.exemplar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Captures everything that went through the standard streams of a build, in the order it happened, up to a maximum size.
+ *
+ * Bytes past the maximum are only counted, so a runaway build can't exhaust the memory of the worker.
+ */
+class Transcript extends OutputStream {
+    static final int DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    private final int maxSize;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private long dropped;
+
+    Transcript() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    Transcript(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (captured.size() < maxSize) {
+            captured.write(b);
+        } else {
+            dropped++;
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        int count = Math.min(length, maxSize - captured.size());
+        captured.write(bytes, offset, count);
+        dropped += length - count;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (dropped > 0) {
+            return captured.toString() + "\n[" + dropped + " more bytes not captured]";
+        }
+        return captured.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package org.gradle.docs.internal.links;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the candidate external links of an Asciidoc document without rendering it.
+ *
+ * Attribute references are expanded with the attributes defined in the document, so links such as {@code {user-manual}index.html}
+ * are found when the attribute is defined in the document header. Comments, listing and literal blocks are skipped
+ * since their URLs aren't rendered as links. Includes and conditionals aren't processed, so the rendered page stays the reference.
+ */
+public class AsciidocLinkExtractor {
+    private static final Pattern ATTRIBUTE_DEFINITION = Pattern.compile("^:([\\w-]+):\\s*(.*)$");
+    private static final Pattern ATTRIBUTE_REFERENCE = Pattern.compile("\\{([\\w-]+)}");
+    private static final Pattern URL = Pattern.compile("(\\\\?)(https?://[^\\s\\[\\]<>\"'`]+)");
+    private static final String TRAILING_PUNCTUATION = ".,;:!?)";
+
+    public static void extract(String document, Consumer<String> links) {
+        Map<String, String> attributes = new HashMap<>();
+        String delimiter = null;
+        for (String line : document.split("\\r?\\n")) {
+            if (delimiter != null) {
+                if (line.equals(delimiter)) {
+                    delimiter = null;
+                }
+                continue;
+            }
+            if (line.equals("////") || line.equals("----") || line.equals("....")) {
+                delimiter = line;
+                continue;
+            }
+            if (line.startsWith("//")) {
+                continue;
+            }
+
+            Matcher definition = ATTRIBUTE_DEFINITION.matcher(line);
+            if (definition.matches()) {
+                attributes.put(definition.group(1), expand(definition.group(2), attributes));
+                continue;
+            }
+
+            Matcher url = URL.matcher(expand(line, attributes));
+            while (url.find()) {
+                if (url.group(1).isEmpty()) {
+                    links.accept(trimTrailingPunctuation(url.group(2)));
+                }
+            }
+        }
+    }
+
+    private static String expand(String text, Map<String, String> attributes) {
+        Matcher reference = ATTRIBUTE_REFERENCE.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (reference.find()) {
+            String value = attributes.get(reference.group(1));
+            reference.appendReplacement(result, Matcher.quoteReplacement(value == null ? reference.group() : value));
+        }
+        reference.appendTail(result);
+        return result.toString();
+    }
+
+    private static String trimTrailingPunctuation(String url) {
+        int end = url.length();
+        while (end > 0 && TRAILING_PUNCTUATION.indexOf(url.charAt(end - 1)) >= 0) {
+            // Keep a closing parenthesis that belongs to the URL
+            if (url.charAt(end - 1) == ')' && count(url, '(', end) >= count(url, ')', end)) {
+                break;
+            }
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    private static int count(String text, char c, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,52 @@
+package org.gradle.docs.internal.links;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How {@link LinkCheckEngine} reacts to a host refusing requests (see {@link LinkCheckResult#isRefused()}).
+ *
+ * A refused link is probed again up to {@code maxRetries} times, after an exponential backoff with jitter or the {@code Retry-After}
+ * delay requested by the host, whichever is longer. Once a host refused {@code circuitBreakerThreshold} distinct links in a row, or asks
+ * to wait longer than {@code maxBackoff}, its circuit opens and its remaining links are reported as unverified without being probed.
+ */
+public class HostHealthPolicy {
+    private final int maxRetries;
+    private final int circuitBreakerThreshold;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public HostHealthPolicy(int maxRetries, int circuitBreakerThreshold, Duration initialBackoff, Duration maxBackoff) {
+        if (maxRetries < 0 || circuitBreakerThreshold < 1) {
+            throw new IllegalArgumentException("Link check retries must be at least 0 and the circuit breaker threshold at least 1.");
+        }
+        this.maxRetries = maxRetries;
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @return the delay before probing a host again after it refused {@code consecutiveRefusals} requests in a row.
+     */
+    public Duration backoff(int consecutiveRefusals, Duration retryAfter) {
+        long exponential = initialBackoff.toMillis() << Math.min(consecutiveRefusals - 1, 20);
+        long capped = Math.min(exponential, maxBackoff.toMillis());
+        // Half fixed, half random so builds hitting the same host don't retry in lockstep
+        long jittered = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        Duration delay = Duration.ofMillis(jittered);
+        return retryAfter != null && retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+    }
+}
@@ -0,0 +1,70 @@
+package org.gradle.docs.internal.links;
+
+import org.cyberneko.html.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the {@code href} of every {@code <a>} element of an HTML page while the page is parsed.
+ * It can also report every fragment target of the page, that is each element {@code id} and each {@code <a name>}.
+ * No document tree is built, so the memory used doesn't depend on the size of the page.
+ */
+public class HtmlLinkExtractor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void extract(File page, Consumer<String> hrefs) throws IOException, SAXException {
+        extract(page, hrefs, id -> {});
+    }
+
+    public static void extract(File page, Consumer<String> hrefs, Consumer<String> ids) throws IOException, SAXException {
+        SAXParser parser = new SAXParser();
+        parser.setProperty("http://cyberneko.org/html/properties/default-encoding", "UTF-8");
+        parser.setContentHandler(new AnchorHandler(hrefs, ids));
+
+        try (InputStream inStream = new BufferedInputStream(Channels.newInputStream(FileChannel.open(page.toPath(), StandardOpenOption.READ)), BUFFER_SIZE)) {
+            InputSource source = new InputSource(inStream);
+            source.setSystemId(page.toURI().toString());
+            parser.parse(source);
+        }
+    }
+
+    private static class AnchorHandler extends DefaultHandler {
+        private final Consumer<String> hrefs;
+        private final Consumer<String> ids;
+
+        AnchorHandler(Consumer<String> hrefs, Consumer<String> ids) {
+            this.hrefs = hrefs;
+            this.ids = ids;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            boolean anchor = "a".equalsIgnoreCase(nameOf(localName, qName));
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String attributeName = nameOf(attributes.getLocalName(i), attributes.getQName(i));
+                if ("id".equalsIgnoreCase(attributeName)) {
+                    ids.accept(attributes.getValue(i));
+                } else if (anchor && "href".equalsIgnoreCase(attributeName)) {
+                    hrefs.accept(attributes.getValue(i));
+                } else if (anchor && "name".equalsIgnoreCase(attributeName)) {
+                    ids.accept(attributes.getValue(i));
+                }
+            }
+        }
+
+        private static String nameOf(String localName, String qName) {
+            return localName == null || localName.isEmpty() ? qName : localName;
+        }
+    }
+}
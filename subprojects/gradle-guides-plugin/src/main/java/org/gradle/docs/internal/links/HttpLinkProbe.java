@@ -0,0 +1,98 @@
+package org.gradle.docs.internal.links;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Probes links with a {@code HEAD} request. Any response below 400 is a pass, anything else, including connection errors, is a failure.
+ * Throttling, gateway errors, timeouts and refused connections are reported as refusals (see {@link LinkCheckResult#refused}) along with any {@code Retry-After} delay.
+ *
+ * The connection is never explicitly disconnected so the JDK keep-alive cache can reuse it for the next link to the same host.
+ */
+public class HttpLinkProbe implements LinkProbe {
+    private static final String USER_AGENT = "gradle-guides-plugin/0.0.0.1";
+    private static final int MAX_REDIRECTS = 10;
+    // Throttled, or the host is struggling. A forbidden link is broken for readers too, it fails
+    private static final Set<Integer> REFUSED_STATUS_CODES = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+
+    private final int timeoutMillis;
+
+    public HttpLinkProbe(Duration timeout) {
+        this.timeoutMillis = (int) timeout.toMillis();
+    }
+
+    @Override
+    public LinkCheckResult probe(URI uri) {
+        try {
+            URI location = uri;
+            List<URI> redirectChain = new ArrayList<>();
+            while (true) {
+                URLConnection connection = location.toURL().openConnection();
+                if (!(connection instanceof HttpURLConnection)) {
+                    return LinkCheckResult.failed(uri, -1, "Not an HTTP link: " + location);
+                }
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                httpConnection.setRequestMethod("HEAD");
+                httpConnection.setRequestProperty("User-Agent", USER_AGENT);
+                httpConnection.setConnectTimeout(timeoutMillis);
+                httpConnection.setReadTimeout(timeoutMillis);
+                // Redirects are followed here to record each location, and to follow redirects from http to https
+                httpConnection.setInstanceFollowRedirects(false);
+
+                int statusCode = httpConnection.getResponseCode();
+                String redirect = statusCode >= 300 && statusCode < 400 ? httpConnection.getHeaderField("Location") : null;
+                if (redirect != null) {
+                    if (redirectChain.size() == MAX_REDIRECTS) {
+                        return LinkCheckResult.failed(uri, statusCode, "Too many redirects, last to " + redirect);
+                    }
+                    location = location.resolve(redirect);
+                    redirectChain.add(location);
+                    continue;
+                }
+                if (statusCode < 400) {
+                    return LinkCheckResult.passed(uri, statusCode, redirectChain);
+                }
+                String failureMessage = statusCode + " " + httpConnection.getResponseMessage();
+                if (REFUSED_STATUS_CODES.contains(statusCode)) {
+                    return LinkCheckResult.refused(uri, statusCode, failureMessage, retryAfter(httpConnection.getHeaderField("Retry-After")));
+                }
+                return LinkCheckResult.failed(uri, statusCode, failureMessage);
+            }
+        } catch (SocketTimeoutException | ConnectException e) {
+            return LinkCheckResult.refused(uri, -1, e.toString(), null);
+        } catch (IOException | RuntimeException e) {
+            return LinkCheckResult.failed(uri, -1, e.toString());
+        }
+    }
+
+    private static Duration retryAfter(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, must be a date
+        }
+        try {
+            Duration delay = Duration.between(Instant.now(), ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
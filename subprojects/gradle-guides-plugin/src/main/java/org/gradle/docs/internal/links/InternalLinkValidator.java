@@ -0,0 +1,146 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.UncheckedIOException;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates relative links and fragments of rendered documentation without any network access.
+ *
+ * Every file path and every fragment target of every page is indexed once, then each relative link of each page is resolved against that index.
+ * Links leaving the rendered tree, as well as absolute and root relative links, are ignored.
+ */
+public class InternalLinkValidator {
+    private final Set<String> files;
+    private final Map<String, Page> pages;
+
+    private InternalLinkValidator(Set<String> files, Map<String, Page> pages) {
+        this.files = files;
+        this.pages = pages;
+    }
+
+    public static InternalLinkValidator index(File root) {
+        Path rootPath = root.toPath();
+        List<Path> allFiles;
+        try (Stream<Path> stream = Files.walk(rootPath)) {
+            allFiles = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to index rendered documentation in " + root, e);
+        }
+
+        Set<String> files = allFiles.stream().map(it -> relativePath(rootPath, it)).collect(Collectors.toSet());
+        Map<String, Page> pages = allFiles.parallelStream()
+                .filter(InternalLinkValidator::isHtml)
+                .map(it -> Page.parse(relativePath(rootPath, it), it.toFile()))
+                .collect(Collectors.toMap(it -> it.path, it -> it));
+        return new InternalLinkValidator(files, pages);
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @return a description of each broken link, sorted by page.
+     */
+    public List<String> findBrokenLinks() {
+        return pages.values().parallelStream()
+                .flatMap(page -> page.hrefs.stream().map(href -> check(page, href)).filter(Objects::nonNull))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private String check(Page page, String href) {
+        if (href.isEmpty() || href.startsWith("//") || href.startsWith("/")) {
+            return null;
+        }
+
+        URI link;
+        try {
+            link = new URI(href);
+        } catch (URISyntaxException e) {
+            return describe(page, href, "malformed link");
+        }
+        if (link.isAbsolute()) {
+            return null;
+        }
+
+        String target = page.path;
+        String path = link.getPath();
+        if (path != null && !path.isEmpty()) {
+            try {
+                String resolved = new URI(null, null, "/" + page.path, null).resolve(new URI(null, null, path, null)).normalize().getPath();
+                if (resolved.startsWith("/..")) {
+                    // Outside of the rendered documentation, e.g. a link to the user manual
+                    return null;
+                }
+                target = resolved.substring(1);
+            } catch (URISyntaxException e) {
+                return describe(page, href, "malformed link");
+            }
+            if (target.isEmpty() || target.endsWith("/")) {
+                target = target + "index.html";
+            } else if (!files.contains(target) && files.contains(target + "/index.html")) {
+                target = target + "/index.html";
+            }
+            if (!files.contains(target)) {
+                return describe(page, href, "no file at '" + target + "'");
+            }
+        }
+
+        String fragment = link.getFragment();
+        if (fragment != null && !fragment.isEmpty() && pages.containsKey(target) && !pages.get(target).ids.contains(fragment)) {
+            return describe(page, href, "no anchor '" + fragment + "' in '" + target + "'");
+        }
+        return null;
+    }
+
+    private static String describe(Page page, String href, String reason) {
+        return page.path + ": " + href + " (" + reason + ")";
+    }
+
+    private static boolean isHtml(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".html") || name.endsWith(".htm");
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static class Page {
+        private final String path;
+        private final List<String> hrefs = new ArrayList<>();
+        private final Set<String> ids = new HashSet<>();
+
+        private Page(String path) {
+            this.path = path;
+        }
+
+        static Page parse(String path, File file) {
+            Page page = new Page(path);
+            try {
+                HtmlLinkExtractor.extract(file, page.hrefs::add, page.ids::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read " + file, e);
+            } catch (SAXException e) {
+                throw new RuntimeException("Unable to parse " + file, e);
+            }
+            return page;
+        }
+    }
+}
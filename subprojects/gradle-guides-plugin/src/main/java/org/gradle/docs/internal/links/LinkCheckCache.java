@@ -0,0 +1,170 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Persistent store of link check results keyed by normalized URI (see {@link LinkUris#normalize(URI)}).
+ *
+ * The store is a plain text file so it survives daemon restarts and can be shared by every project of a build.
+ * Writers merge their results into the file under a file lock, the most recent result for a link wins.
+ */
+public class LinkCheckCache {
+    private static final String HEADER = "# link-check-cache v1";
+    private static final ConcurrentMap<String, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Duration successTimeToLive;
+    private final Duration failureTimeToLive;
+    private final Map<URI, LinkCheckResult> entries = new ConcurrentHashMap<>();
+    private final Map<URI, LinkCheckResult> updates = new ConcurrentHashMap<>();
+
+    private LinkCheckCache(File file, Duration successTimeToLive, Duration failureTimeToLive) {
+        this.file = file;
+        this.successTimeToLive = successTimeToLive;
+        this.failureTimeToLive = failureTimeToLive;
+    }
+
+    public static LinkCheckCache load(File file, Duration successTimeToLive, Duration failureTimeToLive) {
+        LinkCheckCache cache = new LinkCheckCache(file, successTimeToLive, failureTimeToLive);
+        synchronized (jvmLock(file)) {
+            cache.entries.putAll(read(file.toPath()));
+        }
+        return cache;
+    }
+
+    /**
+     * @return the cached result for the normalized link or {@code null} if there is none or it has expired.
+     */
+    public LinkCheckResult get(URI normalizedUri) {
+        LinkCheckResult result = entries.get(normalizedUri);
+        if (result == null || isExpired(result, Instant.now())) {
+            return null;
+        }
+        return result;
+    }
+
+    public void put(URI normalizedUri, LinkCheckResult result) {
+        LinkCheckResult entry = new LinkCheckResult(normalizedUri, result.getOutcome(), result.getStatusCode(), result.getRedirectTarget(), result.getFailureMessage(), result.getCheckedAt());
+        entries.put(normalizedUri, entry);
+        updates.put(normalizedUri, entry);
+    }
+
+    /**
+     * Merges the results added since this cache was loaded into the backing file and drops expired entries.
+     */
+    public void save() {
+        if (updates.isEmpty()) {
+            return;
+        }
+        Path path = file.toPath();
+        File lockFile = new File(file.getParentFile(), file.getName() + ".lock");
+        synchronized (jvmLock(file)) {
+            try {
+                Files.createDirectories(path.getParent());
+                try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = channel.lock()) {
+                    Map<URI, LinkCheckResult> merged = read(path);
+                    updates.forEach((uri, result) -> merged.merge(uri, result, (a, b) -> a.getCheckedAt().isAfter(b.getCheckedAt()) ? a : b));
+                    Instant now = Instant.now();
+                    merged.values().removeIf(it -> isExpired(it, now));
+                    write(path, merged);
+                    entries.putAll(merged);
+                    updates.clear();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to save link check results to " + file, e);
+            }
+        }
+    }
+
+    private boolean isExpired(LinkCheckResult result, Instant now) {
+        Duration timeToLive = result.isPassed() ? successTimeToLive : failureTimeToLive;
+        return result.getCheckedAt().plus(timeToLive).isBefore(now);
+    }
+
+    private static Object jvmLock(File file) {
+        return JVM_LOCKS.computeIfAbsent(file.getAbsolutePath(), key -> new Object());
+    }
+
+    private static Map<URI, LinkCheckResult> read(Path path) {
+        Map<URI, LinkCheckResult> result = new HashMap<>();
+        if (!Files.exists(path)) {
+            return result;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                // Unknown format, start from scratch
+                return result;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 6) {
+                    continue;
+                }
+                try {
+                    URI uri = new URI(fields[0]);
+                    LinkCheckResult.Outcome outcome = LinkCheckResult.Outcome.valueOf(fields[1]);
+                    int statusCode = Integer.parseInt(fields[2]);
+                    Instant checkedAt = Instant.ofEpochMilli(Long.parseLong(fields[3]));
+                    URI redirectTarget = fields[4].isEmpty() ? null : new URI(fields[4]);
+                    String failureMessage = fields[5].isEmpty() ? null : fields[5];
+                    result.put(uri, new LinkCheckResult(uri, outcome, statusCode, redirectTarget, failureMessage, checkedAt));
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    // Skip corrupted entry, it will be checked again
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read link check results from " + path, e);
+        }
+        return result;
+    }
+
+    private static void write(Path path, Map<URI, LinkCheckResult> entries) throws IOException {
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (LinkCheckResult entry : entries.values()) {
+                writer.write(entry.getUri().toString());
+                writer.write('\t');
+                writer.write(entry.getOutcome().name());
+                writer.write('\t');
+                writer.write(String.valueOf(entry.getStatusCode()));
+                writer.write('\t');
+                writer.write(String.valueOf(entry.getCheckedAt().toEpochMilli()));
+                writer.write('\t');
+                writer.write(entry.getRedirectTarget() == null ? "" : entry.getRedirectTarget().toString());
+                writer.write('\t');
+                writer.write(entry.getFailureMessage() == null ? "" : entry.getFailureMessage().replaceAll("\\s+", " "));
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.gradle.docs.internal.links;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks links concurrently. At most {@code maxConcurrentRequests} probes are in flight at any time and at most
+ * {@code maxConcurrentRequestsPerHost} of those target the same host. Links waiting on a busy host don't hold a thread.
+ *
+ * The health of each host is tracked as described by {@link HostHealthPolicy}: a host refusing requests is paused before its links
+ * are probed again, and a host that keeps refusing distinct links has its circuit opened. A host known to be unavailable from a
+ * previous build starts half-open, a single link is probed and decides whether the circuit closes or opens. A host configured as
+ * unverified starts with its circuit open for the whole build.
+ *
+ * A probed link that is still refused once it used up its retries, or when the circuit opens, fails. Only the links the open circuit
+ * skipped without probing them are unverified.
+ *
+ * Prefetched links share the concurrency limits but leave the health of their host alone, see {@link #prefetch(URI)}.
+ */
+public class LinkCheckEngine implements AutoCloseable {
+    private final LinkProbe probe;
+    private final int maxConcurrentRequestsPerHost;
+    private final HostHealthPolicy policy;
+    private final UnavailableHosts unavailableHosts;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, HostLane> lanes = new HashMap<>();
+
+    public LinkCheckEngine(LinkProbe probe, int maxConcurrentRequests, int maxConcurrentRequestsPerHost, HostHealthPolicy policy, UnavailableHosts unavailableHosts) {
+        if (maxConcurrentRequests < 1 || maxConcurrentRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Link check concurrency limits must be at least 1.");
+        }
+        this.probe = probe;
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.policy = policy;
+        this.unavailableHosts = unavailableHosts;
+        this.executor = Executors.newFixedThreadPool(maxConcurrentRequests, new LinkCheckThreadFactory("link-check-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new LinkCheckThreadFactory("link-check-backoff-"));
+    }
+
+    public CompletableFuture<LinkCheckResult> check(URI uri) {
+        return enqueue(new PendingLink(uri, false));
+    }
+
+    /**
+     * Checks a link ahead of the page that needs it. A refusal is returned as is, without any retry, and no result changes the state of
+     * the circuit of the host, as the page may not even contain the link.
+     */
+    public CompletableFuture<LinkCheckResult> prefetch(URI uri) {
+        return enqueue(new PendingLink(uri, true));
+    }
+
+    private CompletableFuture<LinkCheckResult> enqueue(PendingLink link) {
+        URI uri = link.uri;
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase();
+        synchronized (lanes) {
+            HostLane lane = lanes.computeIfAbsent(host, key -> new HostLane(key, unavailableHosts.isUnverified(key), unavailableHosts.isUnavailable(key)));
+            if (lane.open) {
+                link.result.complete(unverified(lane, link));
+                return link.result;
+            }
+            lane.pending.add(link);
+            dispatch(lane);
+        }
+        return link.result;
+    }
+
+    // Must be called while holding the lanes lock
+    private void dispatch(HostLane lane) {
+        // While half-open, only one probe decides the fate of the host
+        int limit = lane.halfOpen ? 1 : maxConcurrentRequestsPerHost;
+        while (lane.inFlight < limit && !lane.pending.isEmpty() && lane.resumeAt == 0) {
+            PendingLink link = lane.pending.poll();
+            lane.inFlight++;
+            CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    return probe.probe(link.uri);
+                } finally {
+                    link.elapsedNanos += System.nanoTime() - start;
+                }
+            }, executor).whenComplete((result, failure) -> {
+                List<Runnable> completions = new ArrayList<>();
+                synchronized (lanes) {
+                    lane.inFlight--;
+                    onResult(lane, link, failure != null ? LinkCheckResult.failed(link.uri, -1, failure.toString()) : result, completions);
+                    dispatch(lane);
+                }
+                completions.forEach(Runnable::run);
+            });
+        }
+    }
+
+    // Must be called while holding the lanes lock, the links are completed once the lock is released
+    private void onResult(HostLane lane, PendingLink link, LinkCheckResult result, List<Runnable> completions) {
+        if (link.prefetch) {
+            completions.add(() -> link.complete(result));
+            return;
+        }
+        if (!result.isRefused()) {
+            lane.consecutiveRefusals = 0;
+            if (lane.halfOpen) {
+                lane.halfOpen = false;
+                unavailableHosts.markAvailable(lane.host);
+            }
+            completions.add(() -> link.complete(result));
+            return;
+        }
+
+        // Retries of the same link don't count, a single broken link must not take its host down
+        if (link.lastRefusal == null) {
+            lane.consecutiveRefusals++;
+        }
+        link.lastRefusal = result;
+        lane.lastRefusal = result.getFailureMessage();
+        if (lane.open) {
+            completions.add(() -> link.complete(result));
+            return;
+        }
+
+        Duration delay = policy.backoff(Math.max(lane.consecutiveRefusals, link.attempts + 1), result.getRetryAfter());
+        if (lane.halfOpen || lane.consecutiveRefusals >= policy.getCircuitBreakerThreshold() || delay.compareTo(policy.getMaxBackoff()) > 0) {
+            openCircuit(lane, link, completions);
+        } else if (link.attempts < policy.getMaxRetries()) {
+            link.attempts++;
+            lane.pending.addFirst(link);
+            pause(lane, delay);
+        } else {
+            completions.add(() -> link.complete(result));
+        }
+    }
+
+    private void openCircuit(HostLane lane, PendingLink link, List<Runnable> completions) {
+        lane.open = true;
+        lane.halfOpen = false;
+        unavailableHosts.markUnavailable(lane.host);
+        List<PendingLink> links = new ArrayList<>(lane.pending);
+        links.add(link);
+        lane.pending.clear();
+        for (PendingLink it : links) {
+            // Links waiting for a retry were probed, they fail with their last refusal
+            LinkCheckResult result = it.lastRefusal != null ? it.lastRefusal : unverified(lane, it);
+            completions.add(() -> it.complete(result));
+        }
+    }
+
+    private void pause(HostLane lane, Duration delay) {
+        long resumeAt = System.nanoTime() + delay.toNanos();
+        if (resumeAt - lane.resumeAt <= 0 && lane.resumeAt != 0) {
+            return;
+        }
+        lane.resumeAt = resumeAt;
+        scheduler.schedule(() -> {
+            synchronized (lanes) {
+                // A later refusal may have pushed the pause further
+                if (lane.resumeAt == resumeAt) {
+                    lane.resumeAt = 0;
+                    dispatch(lane);
+                }
+            }
+        }, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static LinkCheckResult unverified(HostLane lane, PendingLink link) {
+        if (lane.configuredUnverified) {
+            return LinkCheckResult.unverified(link.uri, lane.host + " is configured as unverified, its links are not checked");
+        }
+        return LinkCheckResult.unverified(link.uri, lane.host + " is unavailable, it refused " + lane.consecutiveRefusals + " link(s) in a row, last with " + lane.lastRefusal);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static class HostLane {
+        private final String host;
+        private final boolean configuredUnverified;
+        private final Deque<PendingLink> pending = new ArrayDeque<>();
+        private int inFlight = 0;
+        private int consecutiveRefusals = 0;
+        private String lastRefusal;
+        private long resumeAt = 0;
+        private boolean halfOpen;
+        private boolean open = false;
+
+        HostLane(String host, boolean configuredUnverified, boolean halfOpen) {
+            this.host = host;
+            this.configuredUnverified = configuredUnverified;
+            this.open = configuredUnverified;
+            this.halfOpen = halfOpen && !configuredUnverified;
+        }
+    }
+
+    private static class PendingLink {
+        private final URI uri;
+        private final boolean prefetch;
+        private final CompletableFuture<LinkCheckResult> result = new CompletableFuture<>();
+        private int attempts = 0;
+        private LinkCheckResult lastRefusal;
+        // Only updated by the thread probing the link, which happens-before the next probe or the completion
+        private volatile long elapsedNanos = 0;
+
+        PendingLink(URI uri, boolean prefetch) {
+            this.uri = uri;
+            this.prefetch = prefetch;
+        }
+
+        void complete(LinkCheckResult result) {
+            this.result.complete(elapsedNanos == 0 ? result : result.withMetrics(Duration.ofNanos(elapsedNanos), attempts));
+        }
+    }
+
+    private static class LinkCheckThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        LinkCheckThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
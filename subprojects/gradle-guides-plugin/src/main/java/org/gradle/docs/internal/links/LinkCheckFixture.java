@@ -0,0 +1,133 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Recorded link check results meant to be committed alongside the documentation and replayed where there is no network access.
+ *
+ * Each line holds a normalized link, the recorded outcome, status code, redirect target and failure message, separated by tabs.
+ * Lines are sorted by link so re-recording only shows the links that actually changed.
+ * Links that couldn't be verified while recording, e.g. because the circuit of their host was open, are recorded as unverified.
+ */
+public class LinkCheckFixture {
+    private static final String HEADER = "# link-check-fixture v2";
+
+    private final File file;
+    private final Map<URI, LinkCheckResult> entries = new TreeMap<>();
+
+    private LinkCheckFixture(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the fixture stored in the file, or an empty fixture if the file doesn't exist yet.
+     */
+    public static LinkCheckFixture load(File file) {
+        LinkCheckFixture fixture = new LinkCheckFixture(file);
+        if (!file.exists()) {
+            return fixture;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new GradleException("Unsupported link check fixture format in " + file + ", expected '" + HEADER + "' as first line. Record the fixture again.");
+            }
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 5) {
+                    throw new GradleException("Malformed entry in link check fixture " + file + ": " + line);
+                }
+                URI uri = new URI(fields[0]);
+                LinkCheckResult.Outcome outcome = LinkCheckResult.Outcome.valueOf(fields[1]);
+                int statusCode = Integer.parseInt(fields[2]);
+                URI redirectTarget = fields[3].isEmpty() ? null : new URI(fields[3]);
+                String failureMessage = fields[4];
+                fixture.entries.put(uri, resultOf(uri, outcome, statusCode, redirectTarget, failureMessage));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read link check fixture " + file, e);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new GradleException("Malformed entry in link check fixture " + file, e);
+        }
+        return fixture;
+    }
+
+    private static LinkCheckResult resultOf(URI uri, LinkCheckResult.Outcome outcome, int statusCode, URI redirectTarget, String failureMessage) {
+        switch (outcome) {
+            case PASSED:
+                return LinkCheckResult.passed(uri, statusCode, redirectTarget);
+            case UNVERIFIED:
+                return LinkCheckResult.unverified(uri, failureMessage);
+            default:
+                return LinkCheckResult.failed(uri, statusCode, failureMessage);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Map<URI, LinkCheckResult> getEntries() {
+        return entries;
+    }
+
+    public synchronized void record(URI normalizedUri, LinkCheckResult result) {
+        entries.put(normalizedUri, result);
+    }
+
+    /**
+     * @return the recorded result of the link, or a failure if the link wasn't recorded.
+     */
+    public synchronized LinkCheckResult replay(URI normalizedUri) {
+        LinkCheckResult recording = entries.get(normalizedUri);
+        if (recording == null) {
+            return LinkCheckResult.failed(normalizedUri, -1, "No recorded result in " + file);
+        }
+        return resultOf(normalizedUri, recording.getOutcome(), recording.getStatusCode(), recording.getRedirectTarget(), recording.getFailureMessage());
+    }
+
+    public synchronized void save() {
+        try {
+            Files.createDirectories(file.toPath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<URI, LinkCheckResult> entry : entries.entrySet()) {
+                    LinkCheckResult result = entry.getValue();
+                    writer.write(entry.getKey().toString());
+                    writer.write('\t');
+                    writer.write(result.getOutcome().name());
+                    writer.write('\t');
+                    writer.write(String.valueOf(result.getStatusCode()));
+                    writer.write('\t');
+                    writer.write(result.getRedirectTarget() == null ? "" : result.getRedirectTarget().toString());
+                    writer.write('\t');
+                    writer.write(result.isPassed() ? "" : messageOf(result));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write link check fixture " + file, e);
+        }
+    }
+
+    private static String messageOf(LinkCheckResult result) {
+        // Tabs and line breaks would break the line format
+        return result.getFailureMessage() == null ? "" : result.getFailureMessage().replaceAll("\\s+", " ").trim();
+    }
+}
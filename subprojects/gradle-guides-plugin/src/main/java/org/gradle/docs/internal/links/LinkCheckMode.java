@@ -0,0 +1,19 @@
+package org.gradle.docs.internal.links;
+
+/**
+ * How external links are verified.
+ */
+public enum LinkCheckMode {
+    /**
+     * Links are probed over the network, results are cached across builds.
+     */
+    LIVE,
+    /**
+     * Links are probed over the network and the result of every link, unverified ones included, is written to the fixture file.
+     */
+    RECORD,
+    /**
+     * Links are never probed, their results are read from the fixture file as recorded.
+     */
+    REPLAY
+}
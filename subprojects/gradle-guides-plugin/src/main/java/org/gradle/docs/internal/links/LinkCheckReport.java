@@ -0,0 +1,251 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Status and latency of every link checked for one or more pages, written as JSON for tooling and as HTML for people.
+ *
+ * Latencies are only known for links probed in this build, links whose result came from the result cache are listed but left
+ * out of the latency figures. A link probed once but referenced by several pages only counts
+ * as probed once in a merged report.
+ */
+public class LinkCheckReport {
+    public enum Source {
+        PROBED, CACHED
+    }
+
+    private final String title;
+    private final Instant startedAt;
+    private final Duration duration;
+    private final List<Entry> entries;
+
+    public LinkCheckReport(String title, Instant startedAt, Duration duration, List<Entry> entries) {
+        this.title = title;
+        this.startedAt = startedAt;
+        this.duration = duration;
+        this.entries = entries;
+    }
+
+    /**
+     * @return a report of all links of all the reports, lasting from the start of the first report to the end of the last one.
+     */
+    public static LinkCheckReport merge(String title, Collection<LinkCheckReport> reports) {
+        List<Entry> entries = new ArrayList<>();
+        Instant startedAt = null;
+        Instant endedAt = null;
+        for (LinkCheckReport report : reports) {
+            entries.addAll(report.entries);
+            Instant reportEndedAt = report.startedAt.plus(report.duration);
+            startedAt = startedAt == null || report.startedAt.isBefore(startedAt) ? report.startedAt : startedAt;
+            endedAt = endedAt == null || reportEndedAt.isAfter(endedAt) ? reportEndedAt : endedAt;
+        }
+        entries.sort((a, b) -> a.page.equals(b.page) ? a.result.getUri().compareTo(b.result.getUri()) : a.page.compareTo(b.page));
+
+        // Every task waiting on the same probe got the same result, only the first of them keeps its latency
+        Set<URI> probed = new HashSet<>();
+        List<Entry> deduplicated = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.source == Source.PROBED && !probed.add(LinkUris.normalize(entry.result.getUri()))) {
+                deduplicated.add(new Entry(entry.page, entry.result.withMetrics(null, entry.result.getRetries()), Source.CACHED));
+            } else {
+                deduplicated.add(entry);
+            }
+        }
+        if (startedAt == null) {
+            startedAt = Instant.now();
+            endedAt = startedAt;
+        }
+        return new LinkCheckReport(title, startedAt, Duration.between(startedAt, endedAt), deduplicated);
+    }
+
+    public void writeJson(File file) {
+        write(file, writer -> {
+            writer.println("{");
+            writer.println("  \"title\": " + json(title) + ",");
+            writer.println("  \"totals\": " + totalsJson() + ",");
+            writer.println("  \"hosts\": [");
+            writer.println(hostStatistics().stream().map(it -> "    " + it.toJson()).collect(Collectors.joining(",\n")));
+            writer.println("  ],");
+            writer.println("  \"links\": [");
+            writer.println(entries.stream().map(it -> "    " + it.toJson()).collect(Collectors.joining(",\n")));
+            writer.println("  ]");
+            writer.println("}");
+        });
+    }
+
+    public void writeHtml(File file) {
+        write(file, writer -> {
+            writer.println("<!DOCTYPE html>");
+            writer.println("<html><head><meta charset=\"UTF-8\"><title>" + html(title) + "</title>");
+            writer.println("<style>body{font-family:sans-serif}table{border-collapse:collapse}td,th{border:1px solid #ccc;padding:2px 6px;text-align:left}.FAILED{color:#b00}.UNVERIFIED{color:#a60}</style>");
+            writer.println("</head><body>");
+            writer.println("<h1>" + html(title) + "</h1>");
+            writer.println("<p>" + entries.size() + " links, " + count(LinkCheckResult.Outcome.PASSED) + " passed, " + count(LinkCheckResult.Outcome.FAILED) + " failed, "
+                    + count(LinkCheckResult.Outcome.UNVERIFIED) + " unverified, " + probed().size() + " probed in " + duration.toMillis() + " ms.</p>");
+            writer.println("<h2>Hosts</h2>");
+            writer.println("<table><tr><th>Host</th><th>Links</th><th>Probed</th><th>Failed</th><th>p50 (ms)</th><th>p95 (ms)</th><th>p99 (ms)</th><th>Total (ms)</th></tr>");
+            for (HostStatistics host : hostStatistics()) {
+                writer.println("<tr><td>" + html(host.host) + "</td><td>" + host.links + "</td><td>" + host.latencies.size() + "</td><td>" + host.failed + "</td><td>"
+                        + host.percentile(50) + "</td><td>" + host.percentile(95) + "</td><td>" + host.percentile(99) + "</td><td>" + host.totalLatency() + "</td></tr>");
+            }
+            writer.println("</table>");
+            writer.println("<h2>Links</h2>");
+            writer.println("<table><tr><th>Page</th><th>Link</th><th>Outcome</th><th>Status</th><th>Source</th><th>Latency (ms)</th><th>Retries</th><th>Redirects</th><th>Message</th></tr>");
+            for (Entry entry : entries) {
+                LinkCheckResult result = entry.result;
+                writer.println("<tr class=\"" + result.getOutcome() + "\"><td>" + html(entry.page) + "</td><td><a href=\"" + html(result.getUri().toString()) + "\">" + html(result.getUri().toString()) + "</a></td><td>"
+                        + result.getOutcome() + "</td><td>" + result.getStatusCode() + "</td><td>" + entry.source + "</td><td>" + (result.getLatency() == null ? "" : result.getLatency().toMillis()) + "</td><td>"
+                        + result.getRetries() + "</td><td>" + html(result.getRedirectChain().stream().map(URI::toString).collect(Collectors.joining(" -> "))) + "</td><td>"
+                        + html(result.getFailureMessage() == null ? "" : result.getFailureMessage()) + "</td></tr>");
+            }
+            writer.println("</table>");
+            writer.println("</body></html>");
+        });
+    }
+
+    /**
+     * @return the totals of the report on a single line, meant to be appended to a history of link check runs.
+     */
+    public String toHistoryLine(Instant timestamp) {
+        return "{\"timestamp\": " + json(timestamp.toString()) + ", \"totals\": " + totalsJson() + "}";
+    }
+
+    private String totalsJson() {
+        long totalLatency = probed().stream().mapToLong(it -> it.result.getLatency().toMillis()).sum();
+        return "{\"links\": " + entries.size() + ", \"passed\": " + count(LinkCheckResult.Outcome.PASSED) + ", \"failed\": " + count(LinkCheckResult.Outcome.FAILED)
+                + ", \"unverified\": " + count(LinkCheckResult.Outcome.UNVERIFIED) + ", \"probed\": " + probed().size() + ", \"totalLatencyMillis\": " + totalLatency
+                + ", \"durationMillis\": " + duration.toMillis() + "}";
+    }
+
+    private long count(LinkCheckResult.Outcome outcome) {
+        return entries.stream().filter(it -> it.result.getOutcome() == outcome).count();
+    }
+
+    private List<Entry> probed() {
+        return entries.stream().filter(it -> it.result.getLatency() != null).collect(Collectors.toList());
+    }
+
+    private List<HostStatistics> hostStatistics() {
+        Map<String, HostStatistics> hosts = new TreeMap<>();
+        for (Entry entry : entries) {
+            URI uri = entry.result.getUri();
+            HostStatistics host = hosts.computeIfAbsent(uri.getHost() == null ? "" : uri.getHost().toLowerCase(), HostStatistics::new);
+            host.links++;
+            if (entry.result.getOutcome() == LinkCheckResult.Outcome.FAILED) {
+                host.failed++;
+            }
+            if (entry.result.getLatency() != null) {
+                host.latencies.add(entry.result.getLatency().toMillis());
+            }
+        }
+        hosts.values().forEach(it -> it.latencies.sort(null));
+        return new ArrayList<>(hosts.values());
+    }
+
+    private static void write(File file, WriterAction action) {
+        try {
+            Files.createDirectories(file.toPath().getParent());
+            try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+                action.write(writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write link check report " + file, e);
+        }
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static String html(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private interface WriterAction {
+        void write(PrintWriter writer);
+    }
+
+    public static class Entry {
+        private final String page;
+        private final LinkCheckResult result;
+        private final Source source;
+
+        public Entry(String page, LinkCheckResult result, Source source) {
+            this.page = page;
+            this.result = result;
+            this.source = source;
+        }
+
+        private String toJson() {
+            return "{\"page\": " + json(page) + ", \"url\": " + json(result.getUri().toString()) + ", \"outcome\": " + json(result.getOutcome().name())
+                    + ", \"status\": " + result.getStatusCode() + ", \"source\": " + json(source.name())
+                    + ", \"latencyMillis\": " + (result.getLatency() == null ? "null" : String.valueOf(result.getLatency().toMillis()))
+                    + ", \"retries\": " + result.getRetries()
+                    + ", \"redirects\": [" + result.getRedirectChain().stream().map(it -> json(it.toString())).collect(Collectors.joining(", ")) + "]"
+                    + ", \"message\": " + json(result.getFailureMessage()) + "}";
+        }
+    }
+
+    private static class HostStatistics {
+        private final String host;
+        private final List<Long> latencies = new ArrayList<>();
+        private int links;
+        private int failed;
+
+        HostStatistics(String host) {
+            this.host = host;
+        }
+
+        // Nearest-rank percentile of the sorted latencies, empty when nothing was probed
+        private String percentile(int percentile) {
+            if (latencies.isEmpty()) {
+                return "";
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * latencies.size());
+            return String.valueOf(latencies.get(Math.max(rank, 1) - 1));
+        }
+
+        private long totalLatency() {
+            return latencies.stream().mapToLong(Long::longValue).sum();
+        }
+
+        private String toJson() {
+            return "{\"host\": " + json(host) + ", \"links\": " + links + ", \"probed\": " + latencies.size() + ", \"failed\": " + failed
+                    + ", \"p50Millis\": " + orNull(percentile(50)) + ", \"p95Millis\": " + orNull(percentile(95)) + ", \"p99Millis\": " + orNull(percentile(99))
+                    + ", \"totalLatencyMillis\": " + totalLatency() + "}";
+        }
+
+        private static String orNull(String value) {
+            return value.isEmpty() ? "null" : value;
+        }
+    }
+}
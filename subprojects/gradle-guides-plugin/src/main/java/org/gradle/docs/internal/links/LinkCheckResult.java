@@ -0,0 +1,144 @@
+package org.gradle.docs.internal.links;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of probing a single external link.
+ */
+public class LinkCheckResult {
+    public enum Outcome {
+        PASSED, FAILED,
+        /**
+         * The link couldn't be verified because its host is unavailable, it is neither a pass nor a failure.
+         */
+        UNVERIFIED
+    }
+
+    private final URI uri;
+    private final Outcome outcome;
+    private final int statusCode;
+    private final URI redirectTarget;
+    private final String failureMessage;
+    private final Instant checkedAt;
+    private final boolean refused;
+    private final Duration retryAfter;
+    private final List<URI> redirectChain;
+    private final Duration latency;
+    private final int retries;
+
+    public LinkCheckResult(URI uri, Outcome outcome, int statusCode, URI redirectTarget, String failureMessage, Instant checkedAt) {
+        this(uri, outcome, statusCode, redirectTarget, failureMessage, checkedAt, false, null, redirectTarget == null ? Collections.emptyList() : Collections.singletonList(redirectTarget), null, 0);
+    }
+
+    private LinkCheckResult(URI uri, Outcome outcome, int statusCode, URI redirectTarget, String failureMessage, Instant checkedAt, boolean refused, Duration retryAfter, List<URI> redirectChain, Duration latency, int retries) {
+        this.uri = uri;
+        this.outcome = outcome;
+        this.statusCode = statusCode;
+        this.redirectTarget = redirectTarget;
+        this.failureMessage = failureMessage;
+        this.checkedAt = checkedAt;
+        this.refused = refused;
+        this.retryAfter = retryAfter;
+        this.redirectChain = redirectChain;
+        this.latency = latency;
+        this.retries = retries;
+    }
+
+    public static LinkCheckResult passed(URI uri, int statusCode, URI redirectTarget) {
+        return new LinkCheckResult(uri, Outcome.PASSED, statusCode, redirectTarget, null, Instant.now());
+    }
+
+    public static LinkCheckResult passed(URI uri, int statusCode, List<URI> redirectChain) {
+        URI redirectTarget = redirectChain.isEmpty() ? null : redirectChain.get(redirectChain.size() - 1);
+        return new LinkCheckResult(uri, Outcome.PASSED, statusCode, redirectTarget, null, Instant.now(), false, null, redirectChain, null, 0);
+    }
+
+    public static LinkCheckResult failed(URI uri, int statusCode, String failureMessage) {
+        return new LinkCheckResult(uri, Outcome.FAILED, statusCode, null, failureMessage, Instant.now());
+    }
+
+    /**
+     * @return a failure caused by the host rather than the link, e.g. throttling or a timeout. The link may pass when probed again later.
+     */
+    public static LinkCheckResult refused(URI uri, int statusCode, String failureMessage, Duration retryAfter) {
+        return new LinkCheckResult(uri, Outcome.FAILED, statusCode, null, failureMessage, Instant.now(), true, retryAfter, Collections.emptyList(), null, 0);
+    }
+
+    public static LinkCheckResult unverified(URI uri, String reason) {
+        return new LinkCheckResult(uri, Outcome.UNVERIFIED, -1, null, reason, Instant.now());
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isPassed() {
+        return outcome == Outcome.PASSED;
+    }
+
+    /**
+     * @return the HTTP status code of the response or -1 if no response was received.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the location the link finally resolved to when the server redirected the request, otherwise {@code null}.
+     */
+    public URI getRedirectTarget() {
+        return redirectTarget;
+    }
+
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    public Instant getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * @return a copy of this result with the time spent probing the link and the number of retries it took.
+     */
+    public LinkCheckResult withMetrics(Duration latency, int retries) {
+        return new LinkCheckResult(uri, outcome, statusCode, redirectTarget, failureMessage, checkedAt, refused, retryAfter, redirectChain, latency, retries);
+    }
+
+    /**
+     * @return every location the link was redirected to, in order.
+     */
+    public List<URI> getRedirectChain() {
+        return redirectChain;
+    }
+
+    /**
+     * @return the time spent probing the link in this build, {@code null} if the result wasn't probed in this build.
+     */
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public boolean isRefused() {
+        return refused;
+    }
+
+    /**
+     * @return how long the host asked to wait before the next request, {@code null} if it didn't say.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
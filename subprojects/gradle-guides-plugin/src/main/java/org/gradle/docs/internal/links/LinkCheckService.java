@@ -0,0 +1,233 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinates link verification for the whole build. Every distinct link is resolved at most once per build, no matter
+ * how many {@link org.gradle.docs.internal.tasks.CheckLinks} tasks reference it, and all tasks waiting on it get the same result.
+ *
+ * There is one instance per build tree. It is created on first use and closed when the build finishes.
+ * This fills the role of a shared build service, which isn't available in the Gradle version this plugin targets.
+ *
+ * When recording or replaying (see {@link LinkCheckMode}), the result cache is bypassed so every link goes through the fixture.
+ * Recording stores the final result of every link, including the ones left unverified. Replaying answers straight from the fixture.
+ */
+public class LinkCheckService implements AutoCloseable {
+    private static final Logger LOGGER = Logging.getLogger(LinkCheckService.class);
+    private static final Map<Gradle, LinkCheckService> SERVICES = new IdentityHashMap<>();
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(500);
+
+    private final LinkCheckServiceParameters parameters;
+    private final Map<URI, CompletableFuture<LinkCheckResult>> results = new ConcurrentHashMap<>();
+    private final Map<URI, CompletableFuture<LinkCheckResult>> prefetches = new ConcurrentHashMap<>();
+    private final AtomicInteger probed = new AtomicInteger();
+    private final AtomicInteger fromCache = new AtomicInteger();
+    private final List<LinkCheckReport> reports = new ArrayList<>();
+    private boolean started;
+    private LinkCheckCache cache;
+    private UnavailableHosts unavailableHosts;
+    private LinkCheckFixture fixture;
+    private boolean replaying;
+    private LinkCheckEngine engine;
+
+    private LinkCheckService(LinkCheckServiceParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Registers the service for the build tree the project belongs to. Only the first registration configures the service.
+     */
+    public static Provider<LinkCheckService> registerIfAbsent(Project project, Action<? super LinkCheckServiceParameters> action) {
+        Gradle build = rootBuildOf(project.getGradle());
+        LinkCheckService service;
+        synchronized (SERVICES) {
+            service = SERVICES.get(build);
+            if (service == null) {
+                LinkCheckServiceParameters parameters = project.getObjects().newInstance(LinkCheckServiceParameters.class);
+                action.execute(parameters);
+                service = new LinkCheckService(parameters);
+                SERVICES.put(build, service);
+                build.buildFinished(result -> {
+                    synchronized (SERVICES) {
+                        SERVICES.remove(build).close();
+                    }
+                });
+            }
+        }
+        LinkCheckService result = service;
+        return project.getProviders().provider(() -> result);
+    }
+
+    private static Gradle rootBuildOf(Gradle gradle) {
+        Gradle result = gradle;
+        while (result.getParent() != null) {
+            result = result.getParent();
+        }
+        return result;
+    }
+
+    /**
+     * @return the result for the link, probing it only if no other task already asked for it during this build and no unexpired result is cached.
+     */
+    public CompletableFuture<LinkCheckResult> check(URI uri) {
+        URI normalizedUri = LinkUris.normalize(uri);
+        return results.computeIfAbsent(normalizedUri, it -> {
+            CompletableFuture<LinkCheckResult> prefetch = prefetches.get(it);
+            if (prefetch == null) {
+                return resolve(it, false);
+            }
+            // A refused or unverified prefetch said nothing about the health of the host, the link is checked again like any other
+            return prefetch.thenCompose(result -> isSettled(result) ? CompletableFuture.completedFuture(result) : resolve(it, false));
+        });
+    }
+
+    /**
+     * Starts checking a link ahead of the task that needs its result. The result warms the cache, but doesn't count toward the health
+     * of the host: the link may not be on the rendered page.
+     */
+    public void prefetch(URI uri) {
+        URI normalizedUri = LinkUris.normalize(uri);
+        if (!results.containsKey(normalizedUri)) {
+            prefetches.computeIfAbsent(normalizedUri, it -> resolve(it, true));
+        }
+    }
+
+    public boolean isPrefetched(URI uri) {
+        return prefetches.containsKey(LinkUris.normalize(uri));
+    }
+
+    private static boolean isSettled(LinkCheckResult result) {
+        return !result.isRefused() && result.getOutcome() != LinkCheckResult.Outcome.UNVERIFIED;
+    }
+
+    private synchronized CompletableFuture<LinkCheckResult> resolve(URI normalizedUri, boolean prefetch) {
+        if (!started) {
+            start();
+        }
+
+        LinkCheckResult cachedResult = cache == null ? null : cache.get(normalizedUri);
+        if (cachedResult != null) {
+            fromCache.incrementAndGet();
+            return CompletableFuture.completedFuture(cachedResult);
+        }
+
+        if (replaying) {
+            return CompletableFuture.completedFuture(fixture.replay(normalizedUri));
+        }
+
+        probed.incrementAndGet();
+        LinkCheckCache resultCache = cache;
+        LinkCheckFixture recording = fixture;
+        return (prefetch ? engine.prefetch(normalizedUri) : engine.check(normalizedUri)).thenApply(result -> {
+            // Only the final result of a link is kept, a prefetch that wasn't settled is checked again
+            if (prefetch && !isSettled(result)) {
+                return result;
+            }
+            // Unverified links are checked again next time, the host may be back by then
+            if (resultCache != null && result.getOutcome() != LinkCheckResult.Outcome.UNVERIFIED) {
+                resultCache.put(normalizedUri, result);
+            }
+            if (recording != null) {
+                recording.record(normalizedUri, result);
+            }
+            return result;
+        });
+    }
+
+    private void start() {
+        started = true;
+        File fixtureFile = parameters.getFixtureFile().get().getAsFile();
+        unavailableHosts = UnavailableHosts.inMemory().withUnverifiedHosts(parameters.getUnverifiedHosts().get());
+        switch (parameters.getMode().get()) {
+            case RECORD:
+                fixture = LinkCheckFixture.load(fixtureFile);
+                break;
+            case REPLAY:
+                if (!fixtureFile.isFile()) {
+                    throw new GradleException("Cannot replay link checks, no fixture found at " + fixtureFile + ". Record one with -PlinkCheck.mode=record.");
+                }
+                // Nothing is probed, so neither retries nor the host circuit apply
+                fixture = LinkCheckFixture.load(fixtureFile);
+                replaying = true;
+                return;
+            default:
+                cache = LinkCheckCache.load(parameters.getResultCacheFile().get().getAsFile(), parameters.getSuccessTimeToLive().get(), parameters.getFailureTimeToLive().get());
+                unavailableHosts = UnavailableHosts.load(parameters.getUnavailableHostsFile().get().getAsFile(), parameters.getFailureTimeToLive().get()).withUnverifiedHosts(parameters.getUnverifiedHosts().get());
+        }
+        LinkProbe probe = new HttpLinkProbe(parameters.getRequestTimeout().get());
+        HostHealthPolicy policy = new HostHealthPolicy(parameters.getMaxRetries().get(), parameters.getCircuitBreakerThreshold().get(), INITIAL_BACKOFF, parameters.getMaxBackoff().get());
+        engine = new LinkCheckEngine(probe, parameters.getMaxConcurrentRequests().get(), parameters.getMaxConcurrentRequestsPerHost().get(), policy, unavailableHosts);
+    }
+
+    /**
+     * Writes the results gathered so far to the result cache.
+     */
+    public synchronized void flush() {
+        if (cache != null) {
+            cache.save();
+            unavailableHosts.save();
+        }
+        if (fixture != null && !replaying) {
+            fixture.save();
+        }
+    }
+
+    /**
+     * Adds the report of a link check to the report of the build, written when the build finishes.
+     */
+    public synchronized void report(LinkCheckReport report) {
+        reports.add(report);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!reports.isEmpty()) {
+            writeBuildReport();
+        }
+        if (!started) {
+            return;
+        }
+        if (engine != null) {
+            engine.close();
+        }
+        flush();
+        LOGGER.info("Link check service resolved " + results.size() + " distinct links in " + parameters.getMode().get().name().toLowerCase() + " mode, " + probed.get() + " probed and " + fromCache.get() + " from cache.");
+    }
+
+    private void writeBuildReport() {
+        File reportDirectory = parameters.getReportDirectory().get().getAsFile();
+        LinkCheckReport report = LinkCheckReport.merge("Link check of the build", reports);
+        report.writeJson(new File(reportDirectory, "index.json"));
+        report.writeHtml(new File(reportDirectory, "index.html"));
+        // One line per build to follow the cost of link checking over time
+        try {
+            Files.write(new File(reportDirectory, "history.jsonl").toPath(), Collections.singletonList(report.toHistoryLine(Instant.now())), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write link check history to " + reportDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+import java.time.Duration;
+
+public interface LinkCheckServiceParameters {
+    /**
+     * @return the maximum number of links probed at the same time across the whole build.
+     */
+    Property<Integer> getMaxConcurrentRequests();
+
+    /**
+     * @return the maximum number of links probed at the same time against a single host.
+     */
+    Property<Integer> getMaxConcurrentRequestsPerHost();
+
+    Property<Duration> getRequestTimeout();
+
+    /**
+     * @return the file storing link check results across builds.
+     */
+    RegularFileProperty getResultCacheFile();
+
+    /**
+     * @return how long a passing link is trusted before being checked again.
+     */
+    Property<Duration> getSuccessTimeToLive();
+
+    /**
+     * @return how long a broken link is remembered before being checked again.
+     */
+    Property<Duration> getFailureTimeToLive();
+
+    /**
+     * @return how many times a link refused by its host is probed again.
+     */
+    Property<Integer> getMaxRetries();
+
+    /**
+     * @return how many requests in a row a host may refuse before its remaining links are no longer probed.
+     */
+    Property<Integer> getCircuitBreakerThreshold();
+
+    /**
+     * @return the longest delay to wait for a host before giving up on it.
+     */
+    Property<Duration> getMaxBackoff();
+
+    /**
+     * @return the file remembering hosts that gave up across builds, for as long as broken links are remembered.
+     */
+    RegularFileProperty getUnavailableHostsFile();
+
+    /**
+     * @return the hosts whose links are never probed and reported as unverified, typically hosts blocking link checkers.
+     */
+    ListProperty<String> getUnverifiedHosts();
+
+    /**
+     * @return the directory receiving the report merged from the reports of all link checks of the build.
+     */
+    DirectoryProperty getReportDirectory();
+
+    Property<LinkCheckMode> getMode();
+
+    /**
+     * @return the file results are recorded to and replayed from, see {@link LinkCheckMode}.
+     */
+    RegularFileProperty getFixtureFile();
+}
@@ -0,0 +1,10 @@
+package org.gradle.docs.internal.links;
+
+import java.net.URI;
+
+/**
+ * Verifies a single external link. Implementations are called concurrently from the {@link LinkCheckEngine} threads.
+ */
+public interface LinkProbe {
+    LinkCheckResult probe(URI uri);
+}
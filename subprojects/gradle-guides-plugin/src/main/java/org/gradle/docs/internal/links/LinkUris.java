@@ -0,0 +1,43 @@
+package org.gradle.docs.internal.links;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+public class LinkUris {
+    /**
+     * Normalizes a link so that all spellings of the same remote resource map to the same key.
+     * The scheme and host are lower cased, default ports and fragments are dropped and an empty path becomes {@code /}.
+     * Fragments are never sent to the server, so they don't change the outcome of an external check.
+     */
+    public static URI normalize(URI uri) {
+        if (!uri.isAbsolute() || uri.isOpaque()) {
+            return uri;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+        String host = uri.getHost() == null ? null : uri.getHost().toLowerCase(Locale.ENGLISH);
+        int port = uri.getPort();
+        if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+            port = -1;
+        }
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        try {
+            StringBuilder result = new StringBuilder();
+            result.append(scheme).append("://");
+            if (uri.getRawUserInfo() != null) {
+                result.append(uri.getRawUserInfo()).append('@');
+            }
+            result.append(host == null ? uri.getRawAuthority() : host);
+            if (host != null && port != -1) {
+                result.append(':').append(port);
+            }
+            result.append(path);
+            if (uri.getRawQuery() != null) {
+                result.append('?').append(uri.getRawQuery());
+            }
+            return new URI(result.toString());
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+}
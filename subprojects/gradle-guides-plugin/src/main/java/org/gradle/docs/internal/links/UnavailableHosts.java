@@ -0,0 +1,131 @@
+package org.gradle.docs.internal.links;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hosts whose circuit opened in a previous build, remembered for a while so the next build starts by probing a single link of
+ * those hosts instead of all of them.
+ *
+ * Hosts known to block link checkers, e.g. answering 403 to anything but a browser, can also be configured as unverified. Their links
+ * are never probed and always reported as unverified.
+ */
+public class UnavailableHosts {
+    private static final String HEADER = "# link-check-unavailable-hosts v1";
+
+    private final File file;
+    private final Duration timeToLive;
+    private final Map<String, Instant> hosts = new HashMap<>();
+    private final Set<String> unverifiedHosts = new HashSet<>();
+    private boolean changed;
+
+    private UnavailableHosts(File file, Duration timeToLive) {
+        this.file = file;
+        this.timeToLive = timeToLive;
+    }
+
+    public static UnavailableHosts inMemory() {
+        return new UnavailableHosts(null, Duration.ZERO);
+    }
+
+    public static UnavailableHosts load(File file, Duration timeToLive) {
+        UnavailableHosts result = new UnavailableHosts(file, timeToLive);
+        if (!file.exists()) {
+            return result;
+        }
+        Instant now = Instant.now();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                // Unknown format, start from scratch
+                return result;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 2) {
+                    continue;
+                }
+                try {
+                    Instant since = Instant.ofEpochMilli(Long.parseLong(fields[1]));
+                    if (since.plus(timeToLive).isAfter(now)) {
+                        result.hosts.put(fields[0], since);
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip corrupted entry
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read unavailable hosts from " + file, e);
+        }
+        return result;
+    }
+
+    public synchronized UnavailableHosts withUnverifiedHosts(Collection<String> hosts) {
+        hosts.forEach(it -> unverifiedHosts.add(it.toLowerCase(Locale.ROOT)));
+        return this;
+    }
+
+    /**
+     * @return whether the links of the host are never probed.
+     */
+    public synchronized boolean isUnverified(String host) {
+        return unverifiedHosts.contains(host);
+    }
+
+    public synchronized boolean isUnavailable(String host) {
+        return hosts.containsKey(host);
+    }
+
+    public synchronized void markUnavailable(String host) {
+        hosts.put(host, Instant.now());
+        changed = true;
+    }
+
+    public synchronized void markAvailable(String host) {
+        changed |= hosts.remove(host) != null;
+    }
+
+    public synchronized void save() {
+        if (file == null || !changed) {
+            return;
+        }
+        Path path = file.toPath();
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Instant> entry : hosts.entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue().toEpochMilli());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            changed = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save unavailable hosts to " + file, e);
+        }
+    }
+}
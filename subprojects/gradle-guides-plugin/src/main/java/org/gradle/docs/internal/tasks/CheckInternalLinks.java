@@ -0,0 +1,49 @@
+package org.gradle.docs.internal.tasks;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.docs.internal.links.InternalLinkValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the relative links and fragments of all rendered pages against the rendered output, without network access.
+ */
+public abstract class CheckInternalLinks extends DefaultTask {
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract DirectoryProperty getRenderedDocumentationRoot();
+
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @TaskAction
+    private void exec() {
+        InternalLinkValidator validator = InternalLinkValidator.index(getRenderedDocumentationRoot().get().getAsFile());
+        List<String> brokenLinks = validator.findBrokenLinks();
+
+        File reportFile = getReportFile().get().getAsFile();
+        try (PrintWriter writer = new PrintWriter(reportFile, "UTF-8")) {
+            writer.println("Checked internal links of " + validator.getPageCount() + " pages, found " + brokenLinks.size() + " broken.");
+            brokenLinks.forEach(writer::println);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (!brokenLinks.isEmpty()) {
+            throw new GradleException("The following internal links are broken:\n " + brokenLinks.stream().collect(Collectors.joining("\n ")) + "\n");
+        }
+    }
+}
@@ -16,69 +16,82 @@
 
 package org.gradle.docs.internal.tasks;
 
-import groovy.util.XmlSlurper;
-import groovy.util.slurpersupport.GPathResult;
-import groovy.util.slurpersupport.NodeChild;
-import groovyx.net.http.HttpBuilder;
-import org.cyberneko.html.parsers.SAXParser;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.docs.internal.IOUtils;
+import org.gradle.docs.internal.links.HtmlLinkExtractor;
+import org.gradle.docs.internal.links.LinkCheckReport;
+import org.gradle.docs.internal.links.LinkCheckResult;
+import org.gradle.docs.internal.links.LinkCheckService;
 import org.xml.sax.SAXException;
 
+import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLConnection;
-import java.nio.charset.Charset;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Spliterator;
-import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
+ * Checks the external links of a rendered page.
  *
+ * Every link is handed to the {@link LinkCheckService}, which only probes the links without an unexpired result in its cache.
  */
 public abstract class CheckLinks extends DefaultTask {
 
     @InputFile
     public abstract RegularFileProperty getIndexDocument();
 
+    @Internal
+    public abstract Property<LinkCheckService> getLinkCheckService();
+
+    /**
+     * @return the directory receiving the JSON and HTML reports of the check.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getReportDirectory();
+
+    @Inject
+    public CheckLinks() {
+        // Links may break at any time
+        getOutputs().upToDateWhen(Specs.satisfyNone());
+    }
+
     @TaskAction
     private void exec() throws IOException, SAXException {
+        long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        LinkCheckService service = getLinkCheckService().get();
+        Map<URI, CompletableFuture<LinkCheckResult>> results = new LinkedHashMap<>();
+        Set<URI> anchors = new HashSet<>();
 
-        Set<URI> failures = new HashSet<>();
-
-        getAnchors(getIndexDocument().get().getAsFile().toURI()).forEach(anchor -> {
+        // Links are submitted while the page is still being parsed
+        HtmlLinkExtractor.extract(getIndexDocument().get().getAsFile(), href -> {
+            URI anchor = toUri(href);
+            if (!anchors.add(anchor)) {
+                return;
+            }
             if (anchor.isAbsolute()) {
                 if (anchor.getScheme().startsWith("http")) {
-                    if (!Blacklist.isBlacklisted(anchor)) {
-                        HttpBuilder client = HttpBuilder.configure(config -> {
-                            config.getRequest().setUri(anchor.toString());
-
-                            Map<String, String> headers = new HashMap<>();
-                            headers.put("User-Agent", "gradle-guides-plugin/0.0.0.1");
-                            config.getRequest().setHeaders(headers);
-                        });
-                        try {
-                            client.head();
-                            getLogger().info("PASSED: " + anchor);
-                        } catch (java.lang.RuntimeException e) {
-                            failures.add(anchor);
-                            getLogger().info("FAILED: " + anchor);
-                        }
-                    } else {
-                        getLogger().debug("SKIPPED (blacklisted): " + anchor);
-                    }
+                    results.put(anchor, service.check(anchor));
                 } else {
                     getLogger().debug("SKIPPED (Not http/s): " + anchor);
                 }
@@ -87,34 +100,51 @@ public abstract class CheckLinks extends DefaultTask {
             }
         });
 
-        if (!failures.isEmpty()) {
-            throw new GradleException("The following links are broken:\n " + failures.stream().map(URI::toString).collect(Collectors.joining("\n")) + "\n");
-        }
-    }
-
-    private Set<URI> getAnchors(URI uri) throws IOException, SAXException {
-        SAXParser parser = new SAXParser();
-        URLConnection connection = uri.toURL().openConnection();
-        connection.addRequestProperty("User-Agent", "Non empty");
+        CompletableFuture.allOf(results.values().toArray(new CompletableFuture[0])).join();
+        service.flush();
 
-        GPathResult page = new XmlSlurper(parser).parseText(IOUtils.toString(connection.getInputStream(), Charset.defaultCharset()));
+        getLogger().info(results.keySet().stream().filter(service::isPrefetched).count() + " of " + results.size() + " links were prefetched from the source.");
 
-        Spliterator<GPathResult> it = Spliterators.spliteratorUnknownSize(page.depthFirst(), Spliterator.NONNULL);
-        return StreamSupport.stream(it, false).filter(e -> e.name().equals("A") && ((NodeChild)e).attributes().get("href") != null).map(NodeChild.class::cast).map(e -> {
-            try {
-                return new URI(e.attributes().get("href").toString());
-            } catch (URISyntaxException ex) {
-                throw new RuntimeException(ex);
+        Set<URI> failures = new LinkedHashSet<>();
+        Set<String> unavailableHosts = new TreeSet<>();
+        results.forEach((anchor, future) -> {
+            LinkCheckResult result = future.join();
+            if (result.isPassed()) {
+                getLogger().info("PASSED: " + anchor);
+            } else if (result.getOutcome() == LinkCheckResult.Outcome.UNVERIFIED) {
+                unavailableHosts.add(anchor.getHost());
+                getLogger().info("UNVERIFIED: " + anchor + " (" + result.getFailureMessage() + ")");
+            } else {
+                failures.add(anchor);
+                getLogger().info("FAILED: " + anchor + " (" + result.getFailureMessage() + ")");
             }
-        }).collect(Collectors.toSet());
-    }
+        });
+
+        List<LinkCheckReport.Entry> entries = new ArrayList<>();
+        results.forEach((anchor, future) -> {
+            LinkCheckResult result = future.join();
+            LinkCheckReport.Source source = result.getLatency() != null ? LinkCheckReport.Source.PROBED : LinkCheckReport.Source.CACHED;
+            entries.add(new LinkCheckReport.Entry(getPath(), result, source));
+        });
+        LinkCheckReport report = new LinkCheckReport("Link check of " + getPath(), startedAt, Duration.ofNanos(System.nanoTime() - start), entries);
+        File reportDirectory = getReportDirectory().get().getAsFile();
+        report.writeJson(new File(reportDirectory, "links.json"));
+        report.writeHtml(new File(reportDirectory, "links.html"));
+        service.report(report);
 
-    private static class Blacklist {
-        // These hosts are blocking web scrapers.
-        private static final List<String> BLACKLISTED_HOSTS = Arrays.asList("bugs.java.com", "youtrack.jetbrains.com");
+        if (!unavailableHosts.isEmpty()) {
+            getLogger().warn("Some links couldn't be verified because their host is unavailable: " + String.join(", ", unavailableHosts));
+        }
+        if (!failures.isEmpty()) {
+            throw new GradleException("The following links are broken:\n " + failures.stream().map(URI::toString).collect(Collectors.joining("\n")) + "\n");
+        }
+    }
 
-        private static boolean isBlacklisted(URI uri) {
-            return BLACKLISTED_HOSTS.contains(uri.getHost());
+    private static URI toUri(String href) {
+        try {
+            return new URI(href);
+        } catch (URISyntaxException ex) {
+            throw new RuntimeException(ex);
         }
     }
 }
@@ -0,0 +1,56 @@
+package org.gradle.docs.internal.tasks;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.docs.internal.links.AsciidocLinkExtractor;
+import org.gradle.docs.internal.links.LinkCheckService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Hands the external links found in the Asciidoc source of a page to the {@link LinkCheckService} without waiting for their results.
+ *
+ * The links are then probed while the page is rendered, and {@link CheckLinks} only has to wait for the links of the rendered page
+ * that weren't found in the source. It never fails, the rendered page decides which links are broken.
+ */
+public abstract class PrefetchLinks extends DefaultTask {
+    @InputFile
+    public abstract RegularFileProperty getSourceDocument();
+
+    @Internal
+    public abstract Property<LinkCheckService> getLinkCheckService();
+
+    @TaskAction
+    private void exec() {
+        String document;
+        try {
+            document = new String(Files.readAllBytes(getSourceDocument().get().getAsFile().toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Set<URI> links = new LinkedHashSet<>();
+        AsciidocLinkExtractor.extract(document, href -> {
+            try {
+                links.add(new URI(href));
+            } catch (URISyntaxException e) {
+                getLogger().debug("SKIPPED (malformed): " + href);
+            }
+        });
+
+        LinkCheckService service = getLinkCheckService().get();
+        links.forEach(service::prefetch);
+        getLogger().info("Prefetching " + links.size() + " links found in the source.");
+    }
+}
@@ -24,6 +24,11 @@ public abstract class SampleArchiveBinary extends SampleBinary {
      */
     public abstract Property<Dsl> getDsl();
 
+    /**
+     * @return The content of the sample this archive belongs to
+     */
+    public abstract Property<SampleContentBinary> getContentBinary();
+
     /**
      * @return All content to include in the sample.
      */
@@ -0,0 +1,40 @@
+package org.gradle.docs.samples.internal;
+
+import org.gradle.docs.samples.Dsl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans which installed sample the content of each sample is tested against: the archive of the sample for each of the tested DSLs.
+ * A content page is never tested against the archives of another sample, and each pairing is planned once.
+ */
+class SampleContentTestMatrix {
+    private final Map<SampleContentBinary, Set<SampleArchiveBinary>> archivesByContent = new LinkedHashMap<>();
+
+    static SampleContentTestMatrix plan(Iterable<SampleArchiveBinary> archiveBinaries, Set<Dsl> testedDsls) {
+        SampleContentTestMatrix matrix = new SampleContentTestMatrix();
+        for (SampleArchiveBinary archiveBinary : archiveBinaries) {
+            if (archiveBinary.getContentBinary().isPresent() && testedDsls.contains(archiveBinary.getDsl().get())) {
+                matrix.archivesByContent.computeIfAbsent(archiveBinary.getContentBinary().get(), it -> new LinkedHashSet<>()).add(archiveBinary);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return the archives the content of the sample is tested against, none if the sample has no tested DSL.
+     */
+    Set<SampleArchiveBinary> getArchiveBinaries(SampleContentBinary contentBinary) {
+        return archivesByContent.getOrDefault(contentBinary, Collections.emptySet());
+    }
+
+    List<SampleContentBinary> getContentBinaries() {
+        return new ArrayList<>(archivesByContent.keySet());
+    }
+}
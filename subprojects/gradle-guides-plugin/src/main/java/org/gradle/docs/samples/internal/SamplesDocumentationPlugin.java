@@ -15,6 +15,7 @@ import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.internal.AbstractTask;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.SourceSet;
@@ -27,6 +28,7 @@ import org.gradle.api.tasks.wrapper.Wrapper;
 import org.gradle.docs.internal.DocumentationBasePlugin;
 import org.gradle.docs.internal.DocumentationExtensionInternal;
 import org.gradle.docs.internal.exemplar.AsciidoctorContentTest;
+import org.gradle.docs.internal.links.LinkCheckService;
 import org.gradle.docs.samples.Dsl;
 import org.gradle.docs.samples.SampleSummary;
 import org.gradle.docs.samples.Samples;
@@ -46,6 +48,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -56,8 +59,11 @@ import static org.gradle.docs.internal.DocumentationBasePlugin.DOCS_TEST_SOURCE_
 import static org.gradle.docs.internal.DocumentationBasePlugin.DOCUMENTATION_GROUP_NAME;
 import static org.gradle.docs.internal.StringUtils.*;
 import static org.gradle.docs.internal.configure.AsciidoctorTasks.*;
+import static org.gradle.docs.internal.configure.ContentBinaries.contentTestGradleVersions;
+import static org.gradle.docs.internal.configure.ContentBinaries.createCheckInternalLinksTask;
 import static org.gradle.docs.internal.configure.ContentBinaries.createCheckTasksForContentBinary;
 import static org.gradle.docs.internal.configure.ContentBinaries.createTasksForContentBinary;
+import static org.gradle.docs.internal.configure.ContentBinaries.registerLinkCheckService;
 
 @SuppressWarnings("UnstableApiUsage")
 public class SamplesDocumentationPlugin implements Plugin<Project> {
@@ -78,6 +84,7 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
 
         TaskProvider<Task> assemble = tasks.named(LifecycleBasePlugin.ASSEMBLE_TASK_NAME);
         TaskProvider<Task> check = tasks.register("checkSamples");
+        Provider<LinkCheckService> linkCheckService = registerLinkCheckService(project);
 
         // Register a samples extension to configure published samples
         SamplesInternal extension = configureSamplesExtension(project, layout);
@@ -92,7 +99,7 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
         FileCollection generatedTests = createGeneratedTests(tasks, objects, layout);
         extension.getBinaries().withType(SampleExemplarBinary.class).all(binary -> binary.getTestsContent().from(generatedTests));
         extension.getBinaries().withType(SampleContentBinary.class).all(binary -> createTasksForContentBinary(tasks, binary));
-        extension.getBinaries().withType(SampleContentBinary.class).all(binary -> createCheckTasksForContentBinary(tasks, binary, check));
+        extension.getBinaries().withType(SampleContentBinary.class).all(binary -> createCheckTasksForContentBinary(tasks, layout, linkCheckService, binary, check));
         extension.getBinaries().withType(SampleContentBinary.class).all(binary -> createTasksForSampleContentBinary(tasks, layout, providers, binary));
         extension.getBinaries().withType(SampleArchiveBinary.class).all(binary -> createTasksForSampleArchiveBinary(tasks, layout, binary));
 
@@ -100,7 +107,7 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
         registerGenerateSampleIndex(tasks, providers, objects, extension);
 
         // Render all the documentation out to HTML
-        TaskProvider<? extends Task> renderTask = renderSamplesDocumentation(tasks, assemble, check, extension, asciidoctorConfiguration);
+        TaskProvider<? extends Task> renderTask = renderSamplesDocumentation(tasks, layout, assemble, check, extension, asciidoctorConfiguration);
 
         // Templates
         extension.getTemplates().configureEach(template -> applyConventionsForTemplates(extension, template));
@@ -158,8 +165,17 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
             task.setDescription("Check guides steps commands.");
             task.getClasspath().from(configuration);
             task.getGradleUserHomeDirectoryForTesting().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-gradle-user-home"));
-            extension.getBinaries().withType(SampleContentBinary.class).forEach(contentBinary -> {
-                extension.getBinaries().withType(SampleArchiveBinary.class).forEach(archiveBinary -> {
+            task.getGradleVersions().convention(contentTestGradleVersions(project));
+            task.getCommandResultCacheDirectory().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-command-cache"));
+            task.getCommandExtractionCacheDirectory().convention(project.getRootProject().getLayout().getBuildDirectory().dir("working/guides/content-testing-extraction-cache"));
+            task.getBatchSize().convention(1);
+            task.getMaxParallelForks().convention(0);
+            task.getForkMaxHeapSize().convention("512m");
+            task.getDurationsFile().convention(project.getRootProject().getLayout().getBuildDirectory().file("working/guides/content-testing-durations.txt"));
+            task.getSummaryFile().convention(project.getLayout().getBuildDirectory().file("reports/content-test/summary.txt"));
+            SampleContentTestMatrix matrix = SampleContentTestMatrix.plan(extension.getBinaries().withType(SampleArchiveBinary.class), extension.getContentTestedDsls().get());
+            matrix.getContentBinaries().forEach(contentBinary -> {
+                matrix.getArchiveBinaries(contentBinary).forEach(archiveBinary -> {
                     task.testCase(testCase -> {
                         testCase.getContentFile().set(contentBinary.getInstalledIndexPageFile());
                         testCase.getStartingSample().set(archiveBinary.getInstallDirectory());
@@ -192,6 +208,13 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
         extension.getTestedInstallRoot().convention(layout.getBuildDirectory().dir("working/samples/testing"));
         extension.getDistribution().getTestedInstalledSamples().from(extension.getTestedInstallRoot());
         extension.getDistribution().getTestedInstalledSamples().builtBy(extension.getDistribution().getInstalledSamples().builtBy((Callable<List<DirectoryProperty>>) () -> extension.getBinaries().withType(SampleExemplarBinary.class).stream().map(SampleExemplarBinary::getTestedInstallDirectory).collect(Collectors.toList())));
+        extension.getContentTestedDsls().convention(project.getProviders().provider(() -> {
+            Object value = project.findProperty("samples.contentTest.dsls");
+            if (value == null) {
+                return Arrays.asList(Dsl.values());
+            }
+            return Arrays.stream(value.toString().split(",")).map(it -> Dsl.valueOf(it.trim().toUpperCase(Locale.ENGLISH))).collect(Collectors.toList());
+        }));
 
         // Tempates
         // TODO: The following is only in samples
@@ -275,7 +298,7 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
         extension.getSampleIndexFile().convention(generateSampleIndex.flatMap(GenerateSampleIndexAsciidoc::getOutputFile));
     }
 
-    private TaskProvider<? extends Task> renderSamplesDocumentation(TaskContainer tasks, TaskProvider<Task> assemble, TaskProvider<Task> check, SamplesInternal extension, Configuration classpath) {
+    private TaskProvider<? extends Task> renderSamplesDocumentation(TaskContainer tasks, ProjectLayout layout, TaskProvider<Task> assemble, TaskProvider<Task> check, SamplesInternal extension, Configuration classpath) {
         TaskProvider<Sync> assembleDocs = tasks.register("assembleSamples", Sync.class, task -> {
             task.setGroup(DOCUMENTATION_GROUP_NAME);
             task.setDescription("Assembles all intermediate files needed to generate the samples documentation.");
@@ -331,6 +354,8 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
             binary.getViewablePageFile().fileProvider(samplesMultiPage.map(it -> new File(it.getOutputDir(), binary.getRenderedPermalink().get())));
         });
 
+        createCheckInternalLinksTask(tasks, layout, "checkSamplesInternalLinks", samplesMultiPage, check);
+
         return samplesMultiPage;
     }
 
@@ -440,6 +465,7 @@ public class SamplesDocumentationPlugin implements Plugin<Project> {
     private SampleArchiveBinary registerSampleBinaryForDsl(SamplesInternal extension, SampleInternal sample, Dsl dsl, ObjectFactory objects, FileTree wrapperFiles, SampleContentBinary contentBinary) {
         SampleArchiveBinary binary = objects.newInstance(SampleArchiveBinary.class, sample.getName() + dsl.getDisplayName());
         binary.getDsl().convention(dsl).disallowChanges();
+        binary.getContentBinary().convention(contentBinary).disallowChanges();
         binary.getSampleLinkName().convention(sample.getSampleDocName()).disallowChanges();
         binary.getWorkingDirectory().convention(sample.getInstallDirectory().dir(dsl.getConventionalDirectory())).disallowChanges();
         switch (dsl) {
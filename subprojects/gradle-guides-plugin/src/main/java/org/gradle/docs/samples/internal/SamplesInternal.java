@@ -4,6 +4,8 @@ import org.gradle.api.DomainObjectSet;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.docs.samples.Dsl;
 import org.gradle.docs.samples.Samples;
 import org.gradle.docs.samples.SamplesDistribution;
 
@@ -69,4 +71,11 @@ public abstract class SamplesInternal implements Samples {
      * @return The root directory for rendered documentation.
      */
     public abstract DirectoryProperty getRenderedDocumentationRoot();
+
+    /**
+     * By convention, this is every DSL, or those listed in the {@code samples.contentTest.dsls} project property, e.g. {@code groovy,kotlin}
+     *
+     * @return The DSLs whose archive the content of each sample is tested against.
+     */
+    public abstract SetProperty<Dsl> getContentTestedDsls();
 }